@@ -42,26 +42,26 @@ public class KillAuraMixin {
 
     float range =
         ((FeatureSetting.FloatSetting) Objects.requireNonNull(killAuraFeature.getSetting("Range")))
-            .getValue();
+            .getFloatValue();
     boolean targetPlayers =
         ((FeatureSetting.BooleanSetting)
                 Objects.requireNonNull(killAuraFeature.getSetting("Players")))
-            .getValue();
+            .getBooleanValue();
     boolean targetMobs =
         ((FeatureSetting.BooleanSetting) Objects.requireNonNull(killAuraFeature.getSetting("Mobs")))
-            .getValue();
+            .getBooleanValue();
     int maxTargets =
         ((FeatureSetting.IntSetting)
                 Objects.requireNonNull(killAuraFeature.getSetting("MaxTargets")))
-            .getValue();
+            .getIntValue();
     int attackFrequency =
         ((FeatureSetting.IntSetting)
                 Objects.requireNonNull(killAuraFeature.getSetting("AttackFrequency")))
-            .getValue();
+            .getIntValue();
     boolean changeAngle =
         ((FeatureSetting.BooleanSetting)
                 Objects.requireNonNull(killAuraFeature.getSetting("ChangeAngle")))
-            .getValue();
+            .getBooleanValue();
 
     // Calculate actual attack delay based on AttackFrequency setting
     int actualAttackDelay;
@@ -6,10 +6,14 @@ import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.world.ClientWorld;
 import org.infinite.InfiniteClient;
 import org.infinite.features.fighting.reach.Reach;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 
 @Mixin(ClientPlayerEntity.class)
 public abstract class ReachMixin extends AbstractClientPlayerEntity {
+  @Unique private static final SettingRef<Float> REACH_DISTANCE =
+      SettingRef.ofFloat(Reach.class, "ReachDistance");
 
   public ReachMixin(ClientWorld world, GameProfile profile) {
     super(world, profile);
@@ -18,7 +22,7 @@ public abstract class ReachMixin extends AbstractClientPlayerEntity {
   public double getBlockInteractionRange() {
     // Feature: Reach
     if (InfiniteClient.INSTANCE.isFeatureEnabled(Reach.class))
-      return InfiniteClient.INSTANCE.getSettingFloat(Reach.class, "ReachDistance", 4.5F);
+      return REACH_DISTANCE.getFloat(4.5F);
 
     // super.getBlockInteractionRange()
     return 4.5;
@@ -27,7 +31,7 @@ public abstract class ReachMixin extends AbstractClientPlayerEntity {
   public double getEntityInteractionRange() {
     // Feature: Reach
     if (InfiniteClient.INSTANCE.isFeatureEnabled(Reach.class))
-      return InfiniteClient.INSTANCE.getSettingFloat(Reach.class, "ReachDistance", 3.0F);
+      return REACH_DISTANCE.getFloat(3.0F);
 
     // super.getEntityInteractionRange()
     return 3.0;
@@ -9,13 +9,20 @@ import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.world.ClientWorld;
 import org.infinite.InfiniteClient;
 import org.infinite.features.movement.sprint.SuperSprint;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(ClientPlayerEntity.class)
 public abstract class SuperSprintMixin extends AbstractClientPlayerEntity {
+  @Unique private static final SettingRef<Boolean> ONLY_WHEN_FORWARD =
+      SettingRef.ofBoolean(SuperSprint.class, "OnlyWhenForward");
+
+  @Unique private static final SettingRef<Boolean> EVEN_IF_HUNGRY =
+      SettingRef.ofBoolean(SuperSprint.class, "EvenIfHungry");
 
   public SuperSprintMixin(ClientWorld world, GameProfile profile) {
     super(world, profile);
@@ -31,7 +38,7 @@ public abstract class SuperSprintMixin extends AbstractClientPlayerEntity {
   private boolean wrapHasForwardMovement(Input input, Operation<Boolean> original) {
     // Feature: SuperSprint (Setting: OnlyWhenForward)
     if (InfiniteClient.INSTANCE.isFeatureEnabled(SuperSprint.class)
-        && !InfiniteClient.INSTANCE.isSettingEnabled(SuperSprint.class, "OnlyWhenForward"))
+        && !ONLY_WHEN_FORWARD.isEnabled())
       return input.getMovementInput().length() > 1e-5F;
 
     return original.call(input);
@@ -41,7 +48,6 @@ public abstract class SuperSprintMixin extends AbstractClientPlayerEntity {
   @Inject(at = @At("HEAD"), method = "canSprint()Z", cancellable = true)
   private void onCanSprint(CallbackInfoReturnable<Boolean> cir) {
     // Feature: SuperSprint (Setting: EvenIfHungry)
-    if (InfiniteClient.INSTANCE.isSettingEnabled(SuperSprint.class, "EvenIfHungry"))
-      cir.setReturnValue(true);
+    if (EVEN_IF_HUNGRY.isEnabled()) cir.setReturnValue(true);
   }
 }
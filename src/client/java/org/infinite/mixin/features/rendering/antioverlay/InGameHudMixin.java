@@ -4,15 +4,21 @@ import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.hud.InGameHud;
 import net.minecraft.entity.Entity;
 import net.minecraft.util.Identifier;
-import org.infinite.InfiniteClient;
 import org.infinite.features.rendering.overlay.AntiOverlay;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(InGameHud.class)
 public class InGameHudMixin {
+  @Unique private static final SettingRef<Boolean> NO_PUMPKIN_OVERLAY =
+      SettingRef.ofBoolean(AntiOverlay.class, "NoPumpkinOverlay");
+
+  @Unique private static final SettingRef<Boolean> NO_DARKNESS_OVERLAY =
+      SettingRef.ofBoolean(AntiOverlay.class, "NoDarknessOverlay");
 
   @Inject(
       at = @At("HEAD"),
@@ -28,8 +34,7 @@ public class InGameHudMixin {
     String path = texture.getPath();
 
     // 1. カボチャのぼかしオーバーレイのキャンセル
-    if ("textures/misc/pumpkinblur.png".equals(path)
-        && InfiniteClient.INSTANCE.isSettingEnabled(AntiOverlay.class, "NoPumpkinOverlay")) {
+    if ("textures/misc/pumpkinblur.png".equals(path) && NO_PUMPKIN_OVERLAY.isEnabled()) {
       ci.cancel();
       return;
     }
@@ -37,8 +42,7 @@ public class InGameHudMixin {
     // 2. パウダー・スノーのアウトライン/オーバーレイのキャンセル
     // オリジナルコードでは"NoDarknessOverlay"が使われていますが、テクスチャ名から判断して修正を提案します。
     // （"NoDarknessOverlay"が「パウダー・スノーのアウトライン」も制御していると仮定します。）
-    if ("textures/misc/powder_snow_outline.png".equals(path)
-        && InfiniteClient.INSTANCE.isSettingEnabled(AntiOverlay.class, "NoDarknessOverlay")) {
+    if ("textures/misc/powder_snow_outline.png".equals(path) && NO_DARKNESS_OVERLAY.isEnabled()) {
       ci.cancel();
     }
   }
@@ -48,7 +52,7 @@ public class InGameHudMixin {
 
     // ビネット（暗さ）オーバーレイのキャンセル
     // 「NoDarknessOverlay」設定を流用し、ビネットも制御すると仮定します。
-    if (InfiniteClient.INSTANCE.isSettingEnabled(AntiOverlay.class, "NoDarknessOverlay")) {
+    if (NO_DARKNESS_OVERLAY.isEnabled()) {
       ci.cancel();
     }
   }
@@ -4,14 +4,18 @@ import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import java.nio.ByteBuffer;
 import net.minecraft.client.render.fog.FogRenderer;
-import org.infinite.InfiniteClient;
 import org.infinite.features.rendering.overlay.AntiOverlay;
+import org.infinite.settings.SettingRef;
 import org.joml.Vector4f;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 
 @Mixin(FogRenderer.class)
 public class NoFogMixin {
+  @Unique private static final SettingRef<Boolean> NO_FOG_OVERLAY =
+      SettingRef.ofBoolean(AntiOverlay.class, "NoFogOverlay");
+
   @WrapOperation(
       method =
           "applyFog(Lnet/minecraft/client/render/Camera;IZLnet/minecraft/client/render/RenderTickCounter;FLnet/minecraft/client/world/ClientWorld;)Lorg/joml/Vector4f;",
@@ -32,7 +36,7 @@ public class NoFogMixin {
       float skyEnd,
       float cloudEnd,
       Operation<Void> original) {
-    if (InfiniteClient.INSTANCE.isSettingEnabled(AntiOverlay.class, "NoFogOverlay")) {
+    if (NO_FOG_OVERLAY.isEnabled()) {
       renderDistanceStart = Integer.MAX_VALUE;
       renderDistanceEnd = Integer.MAX_VALUE;
       environmentalStart = Integer.MAX_VALUE;
@@ -2,10 +2,11 @@ package org.infinite.mixin.features.rendering.cameraconfig;
 
 import net.minecraft.block.enums.CameraSubmersionType;
 import net.minecraft.client.render.Camera;
-import org.infinite.InfiniteClient;
 import org.infinite.features.rendering.camera.CameraConfig;
 import org.infinite.features.rendering.overlay.AntiOverlay;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyVariable;
@@ -13,6 +14,14 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(Camera.class)
 public abstract class CameraConfigMixin {
+  @Unique private static final SettingRef<Float> CAMERA_DISTANCE =
+      SettingRef.ofFloat(CameraConfig.class, "CameraDistance");
+
+  @Unique private static final SettingRef<Boolean> CLIP_BLOCK =
+      SettingRef.ofBoolean(CameraConfig.class, "ClipBlock");
+
+  @Unique private static final SettingRef<Boolean> NO_LIQUID_OVERLAY =
+      SettingRef.ofBoolean(AntiOverlay.class, "NoLiquidOverlay");
 
   /**
    * clipToSpaceメソッドに渡されるdesiredCameraDistance変数を変更し、 サードパーソンカメラの距離をカスタム設定で上書きします。
@@ -20,18 +29,16 @@ public abstract class CameraConfigMixin {
    */
   @ModifyVariable(at = @At("HEAD"), method = "clipToSpace(F)F", argsOnly = true)
   private float changeClipToSpaceDistance(float desiredCameraDistance) {
-    // getSettingFloat を使用して設定値を取得します。
+    // 解決済みのSettingRefを使用して設定値を取得します。
     // CameraConfigが無効な場合や設定が見つからない場合は、desiredCameraDistanceが返されます。
-    return InfiniteClient.INSTANCE.getSettingFloat(
-        CameraConfig.class, "CameraDistance", desiredCameraDistance // フォールバック時のデフォルト値
-        );
+    return CAMERA_DISTANCE.getFloat(desiredCameraDistance); // フォールバック時のデフォルト値
   }
 
   /** clipToSpaceメソッドの実行をキャンセルし、 サードパーソンカメラがブロックにクリップされる（めり込んで距離が縮む）のを防ぎます。 */
   @Inject(at = @At("HEAD"), method = "clipToSpace(F)F", cancellable = true)
   private void onClipToSpace(float desiredCameraDistance, CallbackInfoReturnable<Float> cir) {
     // ClipBlock設定が有効な場合、クリッピングを防止するために元の距離をそのまま返します。
-    if (InfiniteClient.INSTANCE.isSettingEnabled(CameraConfig.class, "ClipBlock")) {
+    if (CLIP_BLOCK.isEnabled()) {
       cir.setReturnValue(desiredCameraDistance);
     }
   }
@@ -43,7 +50,7 @@ public abstract class CameraConfigMixin {
       cancellable = true)
   private void onGetSubmersionType(CallbackInfoReturnable<CameraSubmersionType> cir) {
     // NoLiquidOverlay設定が有効な場合、サブマージョンタイプをNONEに設定します。
-    if (InfiniteClient.INSTANCE.isSettingEnabled(AntiOverlay.class, "NoLiquidOverlay")) {
+    if (NO_LIQUID_OVERLAY.isEnabled()) {
       cir.setReturnValue(CameraSubmersionType.NONE);
     }
   }
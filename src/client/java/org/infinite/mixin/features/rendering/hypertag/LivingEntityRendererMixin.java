@@ -2,15 +2,19 @@ package org.infinite.mixin.features.rendering.hypertag;
 
 import net.minecraft.client.render.entity.LivingEntityRenderer;
 import net.minecraft.entity.LivingEntity;
-import org.infinite.InfiniteClient;
 import org.infinite.features.rendering.tag.HyperTag;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(LivingEntityRenderer.class)
 public abstract class LivingEntityRendererMixin {
+  @Unique private static final SettingRef<Boolean> ALWAYS_LABELING =
+      SettingRef.ofBoolean(HyperTag.class, "AlwaysLabeling");
+
   /** Forces the nametag to be rendered if configured in NameTags. */
   @Inject(
       at =
@@ -23,7 +27,6 @@ public abstract class LivingEntityRendererMixin {
       cancellable = true)
   private void shouldForceLabel(
       LivingEntity entity, double distanceSq, CallbackInfoReturnable<Boolean> cir) {
-    if (InfiniteClient.INSTANCE.isSettingEnabled(HyperTag.class, "AlwaysLabeling"))
-      cir.setReturnValue(true);
+    if (ALWAYS_LABELING.isEnabled()) cir.setReturnValue(true);
   }
 }
@@ -7,7 +7,9 @@ import org.infinite.InfiniteClient;
 import org.infinite.features.rendering.camera.CameraConfig;
 import org.infinite.features.rendering.sight.SuperSight;
 import org.infinite.features.rendering.xray.XRay;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -15,6 +17,11 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(GameRenderer.class)
 abstract class GameRendererMixin {
+  @Unique private static final SettingRef<Boolean> NIGHT_VISION =
+      SettingRef.ofBoolean(SuperSight.class, "NightVision");
+
+  @Unique private static final SettingRef<Boolean> ANTI_HURT_TILT =
+      SettingRef.ofBoolean(CameraConfig.class, "AntiHurtTilt");
 
   @Inject(
       at = @At("HEAD"),
@@ -22,7 +29,7 @@ abstract class GameRendererMixin {
       cancellable = true)
   private static void onGetNightVisionStrength(
       LivingEntity entity, float tickDelta, CallbackInfoReturnable<Float> cir) {
-    if (InfiniteClient.INSTANCE.isSettingEnabled(SuperSight.class, "NightVision")
+    if (NIGHT_VISION.isEnabled()
         || InfiniteClient.INSTANCE.isFeatureEnabled(XRay.class)) cir.setReturnValue(1.0f);
   }
 
@@ -31,6 +38,6 @@ abstract class GameRendererMixin {
       method = "tiltViewWhenHurt(Lnet/minecraft/client/util/math/MatrixStack;F)V",
       cancellable = true)
   private void onTiltViewWhenHurt(MatrixStack matrices, float tickDelta, CallbackInfo ci) {
-    if (InfiniteClient.INSTANCE.isSettingEnabled(CameraConfig.class, "AntiHurtTilt")) ci.cancel();
+    if (ANTI_HURT_TILT.isEnabled()) ci.cancel();
   }
 }
@@ -7,12 +7,18 @@ import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.effect.StatusEffect;
 import net.minecraft.entity.effect.StatusEffects;
 import net.minecraft.registry.entry.RegistryEntry;
-import org.infinite.InfiniteClient;
 import org.infinite.features.rendering.sight.SuperSight;
+import org.infinite.settings.SettingRef;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 
 @Mixin(ClientPlayerEntity.class)
 public abstract class SuperSightMixin extends AbstractClientPlayerEntity {
+  @Unique private static final SettingRef<Boolean> NIGHT_VISION =
+      SettingRef.ofBoolean(SuperSight.class, "NightVision");
+
+  @Unique private static final SettingRef<Boolean> ANTI_BLIND =
+      SettingRef.ofBoolean(SuperSight.class, "AntiBlind");
 
   public SuperSightMixin(ClientWorld world, GameProfile profile) {
     super(world, profile);
@@ -22,11 +28,10 @@ public abstract class SuperSightMixin extends AbstractClientPlayerEntity {
     // Feature: SuperSight
 
     // NightVision
-    if (effect == StatusEffects.NIGHT_VISION
-        && InfiniteClient.INSTANCE.isSettingEnabled(SuperSight.class, "NightVision")) return true;
+    if (effect == StatusEffects.NIGHT_VISION && NIGHT_VISION.isEnabled()) return true;
 
     // AntiBlind (BLINDNESS, DARKNESS)
-    if (InfiniteClient.INSTANCE.isSettingEnabled(SuperSight.class, "AntiBlind")) {
+    if (ANTI_BLIND.isEnabled()) {
       if (effect == StatusEffects.BLINDNESS || effect == StatusEffects.DARKNESS) return false;
     }
 
@@ -0,0 +1,24 @@
+package org.infinite.mixin.infinite.network;
+
+import net.minecraft.client.network.ClientCommonNetworkHandler;
+import net.minecraft.network.packet.Packet;
+import org.infinite.libs.metrics.NetworkMetrics;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientCommonNetworkHandler.class)
+public class ClientCommonNetworkHandlerMixin {
+
+  /**
+   * クライアントが送信しようとしたパケットを数える。
+   *
+   * @param packet 送信されようとしているパケット
+   * @param ci CallbackInfo
+   */
+  @Inject(method = "sendPacket(Lnet/minecraft/network/packet/Packet;)V", at = @At("HEAD"))
+  private void onSendPacket(Packet<?> packet, CallbackInfo ci) {
+    NetworkMetrics.onSent(packet);
+  }
+}
@@ -0,0 +1,29 @@
+package org.infinite.mixin.infinite.network;
+
+import io.netty.channel.ChannelHandlerContext;
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.NetworkSide;
+import net.minecraft.network.packet.Packet;
+import org.infinite.libs.metrics.NetworkMetrics;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientConnection.class)
+public class ClientConnectionMixin {
+
+  /**
+   * 受信したパケットを数える。シングルプレイでは内部サーバー側の接続も同じクラスを使うため、クライアント側の接続のみを対象とする。
+   *
+   * @param context チャンネルのコンテキスト
+   * @param packet 受信したパケット
+   * @param ci CallbackInfo
+   */
+  @Inject(method = "channelRead0", at = @At("HEAD"))
+  private void onChannelRead(ChannelHandlerContext context, Packet<?> packet, CallbackInfo ci) {
+    if (((ClientConnection) (Object) this).getSide() == NetworkSide.CLIENTBOUND) {
+      NetworkMetrics.onReceived(packet);
+    }
+  }
+}
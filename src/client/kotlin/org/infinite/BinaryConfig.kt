@@ -0,0 +1,233 @@
+package org.infinite
+
+import org.infinite.settings.FeatureSetting
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * config.json と同じ内容を保持するコンパクトなバイナリスナップショット。
+ * JSONの解析を省略して再接続時の読み込みを高速化するためのもので、config.json の保存のたびに書き出されます。
+ * スナップショットには対応する config.json のサイズと更新時刻が記録されており、
+ * config.json が手動で編集された場合などで一致しなければ使用されません。
+ */
+internal object BinaryConfig {
+    const val FILE_NAME = "config.bin"
+
+    private const val MAGIC = 0x494E4643 // "INFC"
+    private const val VERSION = 1
+
+    // 設定値の種類を表すタグ
+    private const val TAG_BOOLEAN = 0
+    private const val TAG_INT = 1
+    private const val TAG_FLOAT = 2
+    private const val TAG_DOUBLE = 3
+    private const val TAG_STRING = 4
+    private const val TAG_STRING_LIST = 5
+    private const val TAG_COLOR_MAP = 6
+
+    /**
+     * 1つのFeatureの状態をエンコードします。メインスレッドで呼び出してください。
+     */
+    fun encodeFeature(feature: Feature): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            val instance = feature.instance
+            out.writeUTF(feature.name)
+            out.writeBoolean(instance.isEnabled())
+            out.writeInt(instance.settings.size)
+            for (setting in instance.settings) {
+                out.writeUTF(setting.name)
+                when (setting) {
+                    is FeatureSetting.BooleanSetting -> {
+                        out.writeByte(TAG_BOOLEAN)
+                        out.writeBoolean(setting.booleanValue)
+                    }
+
+                    is FeatureSetting.IntSetting -> {
+                        out.writeByte(TAG_INT)
+                        out.writeInt(setting.intValue)
+                    }
+
+                    is FeatureSetting.FloatSetting -> {
+                        out.writeByte(TAG_FLOAT)
+                        out.writeFloat(setting.floatValue)
+                    }
+
+                    is FeatureSetting.DoubleSetting -> {
+                        out.writeByte(TAG_DOUBLE)
+                        out.writeDouble(setting.doubleValue)
+                    }
+
+                    is FeatureSetting.StringSetting -> writeString(out, setting.value)
+                    is FeatureSetting.BlockIDSetting -> writeString(out, setting.value)
+                    is FeatureSetting.EntityIDSetting -> writeString(out, setting.value)
+                    is FeatureSetting.EnumSetting<*> -> writeString(out, setting.value.name)
+                    is FeatureSetting.StringListSetting -> writeStringList(out, setting.value)
+                    is FeatureSetting.BlockListSetting -> writeStringList(out, setting.value)
+                    is FeatureSetting.EntityListSetting -> writeStringList(out, setting.value)
+                    is FeatureSetting.PlayerListSetting -> writeStringList(out, setting.value)
+                    is FeatureSetting.BlockColorListSetting -> {
+                        out.writeByte(TAG_COLOR_MAP)
+                        out.writeInt(setting.value.size)
+                        for ((blockId, color) in setting.value) {
+                            out.writeUTF(blockId)
+                            out.writeInt(color)
+                        }
+                    }
+                }
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * エンコード済みのFeatureをまとめてスナップショットとして書き出します。書き込みスレッドから呼び出されます。
+     */
+    fun write(
+        file: File,
+        jsonFile: File,
+        currentTheme: String,
+        features: List<ByteArray>,
+    ) {
+        val tempFile = file.resolveSibling("$FILE_NAME.tmp")
+        DataOutputStream(tempFile.outputStream().buffered()).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeLong(jsonFile.length())
+            out.writeLong(jsonFile.lastModified())
+            out.writeUTF(currentTheme)
+            out.writeInt(features.size)
+            features.forEach { out.write(it) }
+        }
+        val source = tempFile.toPath()
+        val target = file.toPath()
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+        } catch (_: AtomicMoveNotSupportedException) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING)
+        }
+    }
+
+    /**
+     * スナップショットが [jsonFile] と一致する場合に読み込み、各Featureへ適用して true を返します。
+     * スナップショットが存在しない・古い・壊れている場合は何も適用せずに false を返します。
+     */
+    fun read(
+        file: File,
+        jsonFile: File,
+        features: Map<String, Feature>,
+    ): Boolean {
+        if (!file.exists()) return false
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return false
+                if (input.readLong() != jsonFile.length() || input.readLong() != jsonFile.lastModified()) return false
+                // ヘッダーの検証が済んでから適用を始めるため、途中で失敗してもJSONからの読み込みで上書きされる
+                InfiniteClient.currentTheme = input.readUTF()
+                repeat(input.readInt()) { readFeature(input, features) }
+            }
+            true
+        } catch (e: Exception) {
+            // 壊れたスナップショットは IOException 以外 (負の配列長、不正な設定値など) も投げるため、すべてJSONへの切り替えで扱う
+            InfiniteClient.warn("Failed to read configuration snapshot: ${e.message}")
+            false
+        }
+    }
+
+    private fun readFeature(
+        input: DataInputStream,
+        features: Map<String, Feature>,
+    ) {
+        val instance = features[input.readUTF()]?.instance
+        val enabled = input.readBoolean()
+        if (instance != null) {
+            if (enabled) instance.enable() else instance.disable()
+        }
+        repeat(input.readInt()) {
+            val name = input.readUTF()
+            readSetting(input, instance?.getSetting(name))
+        }
+    }
+
+    // 値は常に読み進め、設定が存在し型が一致する場合にのみ適用する
+    private fun readSetting(
+        input: DataInputStream,
+        setting: FeatureSetting<*>?,
+    ) {
+        when (input.readUnsignedByte()) {
+            TAG_BOOLEAN -> {
+                val value = input.readBoolean()
+                if (setting is FeatureSetting.BooleanSetting) setting.booleanValue = value
+            }
+
+            TAG_INT -> {
+                val value = input.readInt()
+                if (setting is FeatureSetting.IntSetting) setting.intValue = value
+            }
+
+            TAG_FLOAT -> {
+                val value = input.readFloat()
+                if (setting is FeatureSetting.FloatSetting) setting.floatValue = value
+            }
+
+            TAG_DOUBLE -> {
+                val value = input.readDouble()
+                if (setting is FeatureSetting.DoubleSetting) setting.doubleValue = value
+            }
+
+            TAG_STRING -> {
+                val value = input.readUTF()
+                when (setting) {
+                    is FeatureSetting.StringSetting -> setting.value = value
+                    is FeatureSetting.BlockIDSetting -> setting.value = value
+                    is FeatureSetting.EntityIDSetting -> setting.value = value
+                    is FeatureSetting.EnumSetting<*> -> setting.set(value)
+                    else -> {}
+                }
+            }
+
+            TAG_STRING_LIST -> {
+                val value = MutableList(input.readInt()) { input.readUTF() }
+                when (setting) {
+                    is FeatureSetting.StringListSetting -> setting.value = value
+                    is FeatureSetting.BlockListSetting -> setting.value = value
+                    is FeatureSetting.EntityListSetting -> setting.value = value
+                    is FeatureSetting.PlayerListSetting -> setting.value = value
+                    else -> {}
+                }
+            }
+
+            TAG_COLOR_MAP -> {
+                val size = input.readInt()
+                val value = LinkedHashMap<String, Int>(size)
+                repeat(size) { value[input.readUTF()] = input.readInt() }
+                if (setting is FeatureSetting.BlockColorListSetting) setting.value = value
+            }
+
+            else -> throw IOException("Unknown setting tag")
+        }
+    }
+
+    private fun writeString(
+        out: DataOutputStream,
+        value: String,
+    ) {
+        out.writeByte(TAG_STRING)
+        out.writeUTF(value)
+    }
+
+    private fun writeStringList(
+        out: DataOutputStream,
+        value: List<String>,
+    ) {
+        out.writeByte(TAG_STRING_LIST)
+        out.writeInt(value.size)
+        value.forEach { out.writeUTF(it) }
+    }
+}
@@ -1,22 +1,80 @@
 package org.infinite
 
+import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.json.Json
 import kotlinx.serialization.json.JsonArray
 import kotlinx.serialization.json.JsonElement
 import kotlinx.serialization.json.JsonPrimitive
 import kotlinx.serialization.json.buildJsonObject
-import kotlinx.serialization.json.decodeFromJsonElement
+import kotlinx.serialization.json.boolean
+import kotlinx.serialization.json.decodeFromStream
+import kotlinx.serialization.json.double
+import kotlinx.serialization.json.float
+import kotlinx.serialization.json.int
+import kotlinx.serialization.json.jsonArray
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
 import kotlinx.serialization.json.put
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents
 import net.fabricmc.loader.api.FabricLoader
 import net.minecraft.client.MinecraftClient
 import net.minecraft.util.WorldSavePath
 import org.infinite.settings.FeatureSetting
+import java.io.File
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
 import java.nio.file.Path
-
-object ConfigManager {
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+object ConfigManager : ClientTickEvents.EndTick {
     private val json = Json { prettyPrint = true }
 
+    // 最後の変更からこの時間だけ変更がなければ保存する
+    private const val SAVE_DEBOUNCE_MS = 2_000L
+
+    // 変更が続いていても、最初の変更からこの時間が経てば保存する
+    private const val SAVE_MAX_DELAY_MS = 30_000L
+
+    // flush() で書き込みの完了を待つ最大時間
+    private const val FLUSH_TIMEOUT_MS = 5_000L
+
+    // 設定ファイルの書き込み専用スレッド。書き込みは投入順に1つずつ行われ、アイドル時にはスレッドは終了する
+    private val writer =
+        ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+            Thread(runnable, "Infinite Config Writer")
+        }
+
+    private val trackedFeatures: MutableSet<ConfigurableFeature> = ConcurrentHashMap.newKeySet()
+    private val dirtyFeatures: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    // Feature名ごとにシリアライズ済みの設定 (JSON用とバイナリスナップショット用) を保持する (メインスレッドからのみアクセス)
+    private class SerializedFeature(
+        val config: FeatureConfig,
+        val binary: ByteArray,
+    )
+
+    private class Snapshot(
+        val appConfig: AppConfig,
+        val binaryFeatures: List<ByteArray>,
+    )
+
+    private val featureConfigCache = HashMap<String, SerializedFeature>()
+
+    @Volatile
+    private var pending = false
+
+    @Volatile
+    private var pendingSince = 0L
+
+    @Volatile
+    private var lastChange = 0L
+
     @Serializable
     data class FeatureConfig(
         val nameKey: String,
@@ -57,69 +115,179 @@ object ConfigManager {
         }
     }
 
+    /**
+     * 変更のあったFeatureを記録し、一定時間変更が止んだ後にバックグラウンドで設定を保存するよう予約します。
+     * [featureName] が null の場合はテーマなど、Feature以外の設定の変更を表します。
+     */
+    fun markDirty(featureName: String? = null) {
+        if (featureName != null) {
+            dirtyFeatures.add(featureName)
+        }
+        val now = System.currentTimeMillis()
+        if (!pending) {
+            pendingSince = now
+            pending = true
+        }
+        lastChange = now
+    }
+
+    /**
+     * Featureの有効/無効と各設定の変更を監視し、変更時に自動保存を予約します。同じFeatureに対しては一度だけ登録されます。
+     */
+    fun track(feature: Feature) {
+        if (!trackedFeatures.add(feature.instance)) return
+        val name = feature.name
+        feature.instance.addEnabledChangeListener { _, _ -> markDirty(name) }
+        feature.instance.settings.forEach { setting ->
+            setting.addChangeListener { markDirty(name) }
+        }
+    }
+
+    override fun onEndTick(client: MinecraftClient) {
+        // 保存先はサーバーごとに決まるため、ワールドに参加している間のみ自動保存する
+        if (!pending || client.world == null) return
+        val now = System.currentTimeMillis()
+        if (now - lastChange >= SAVE_DEBOUNCE_MS || now - pendingSince >= SAVE_MAX_DELAY_MS) {
+            save(announce = false)
+        }
+    }
+
+    fun registerTickEvent() {
+        ClientTickEvents.END_CLIENT_TICK.register(this)
+    }
+
+    /**
+     * 現在の設定を保存します。ファイルへの書き込みはバックグラウンドで行われ、呼び出し元はブロックされません。
+     */
     fun saveConfig() {
-        val configDir = getConfigDirectory().toFile()
-        if (!configDir.exists()) {
-            configDir.mkdirs()
+        save(announce = true)
+    }
+
+    /**
+     * 予約中の自動保存があればすぐに保存し、書き込み待ちの保存がすべて終わるまで待ちます。
+     * ワールドからの切断時とクライアントの終了時に呼び出し、ゲームを閉じても最後の変更が失われないようにします。
+     */
+    fun flush() {
+        if (pending && MinecraftClient.getInstance().world != null) {
+            save(announce = false)
         }
+        try {
+            // 書き込みは投入順に行われるため、空のタスクの完了を待てばそれまでの書き込みもすべて終わっている
+            writer.submit {}.get(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        } catch (_: TimeoutException) {
+            InfiniteClient.warn("Timed out waiting for the configuration to be saved")
+        } catch (_: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
 
-        val configFile = configDir.resolve("config.json")
-        val featureConfigs =
-            featureCategories
-                .flatMap { category ->
-                    category.features.map { feature ->
-                        val configurableFeature = feature.instance
-                        run {
-                            val settingMap: Map<String, JsonElement> =
-                                configurableFeature.settings.associate { setting ->
-                                    (
-                                        setting.name to
-                                            when (setting) {
-                                                is FeatureSetting.BooleanSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.IntSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.FloatSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.DoubleSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.StringSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.StringListSetting ->
-                                                    JsonArray(setting.value.map { JsonPrimitive(it) })
-
-                                                is FeatureSetting.EnumSetting<*> -> JsonPrimitive(setting.value.name)
-                                                is FeatureSetting.BlockIDSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.EntityIDSetting -> JsonPrimitive(setting.value)
-                                                is FeatureSetting.BlockListSetting ->
-                                                    JsonArray(setting.value.map { JsonPrimitive(it) })
-
-                                                is FeatureSetting.EntityListSetting ->
-                                                    JsonArray(setting.value.map { JsonPrimitive(it) })
-
-                                                is FeatureSetting.PlayerListSetting ->
-                                                    JsonArray(setting.value.map { JsonPrimitive(it) })
-
-                                                is FeatureSetting.BlockColorListSetting ->
-                                                    JsonArray(
-                                                        setting.value.map { (blockId, color) ->
-                                                            buildJsonObject {
-                                                                put("blockId", blockId)
-                                                                put("color", color)
-                                                            }
-                                                        },
-                                                    )
-                                            }
-                                    )
-                                }
-                            FeatureConfig(feature.name, configurableFeature.isEnabled(), settingMap)
-                        }
+    private fun save(announce: Boolean) {
+        pending = false
+        val configDir = getConfigDirectory().toFile()
+        val snapshot = snapshot()
+        writer.execute { write(configDir, snapshot, announce) }
+    }
+
+    // 変更のあったFeatureのみを再シリアライズし、それ以外はキャッシュ済みの内容を再利用する (メインスレッドで実行)
+    private fun snapshot(): Snapshot {
+        val serialized =
+            featureCategories.flatMap { category ->
+                category.features.map { feature ->
+                    val dirty = dirtyFeatures.remove(feature.name)
+                    val cached = featureConfigCache[feature.name]
+                    if (cached != null && !dirty) {
+                        cached
+                    } else {
+                        SerializedFeature(serializeFeature(feature), BinaryConfig.encodeFeature(feature))
+                            .also { featureConfigCache[feature.name] = it }
                     }
                 }
+            }
+        val appConfig = AppConfig(serialized.map { it.config }, InfiniteClient.currentTheme) // Pass currentTheme here
+        return Snapshot(appConfig, serialized.map { it.binary })
+    }
 
-        val appConfig = AppConfig(featureConfigs, InfiniteClient.currentTheme) // Pass currentTheme here
-        val jsonString = json.encodeToString(AppConfig.serializer(), appConfig)
-        configFile.writeText(jsonString)
-        InfiniteClient.log("Configuration saved to ${configFile.absolutePath}")
+    private fun serializeFeature(feature: Feature): FeatureConfig {
+        val configurableFeature = feature.instance
+        val settingMap: Map<String, JsonElement> =
+            configurableFeature.settings.associate { setting ->
+                (
+                    setting.name to
+                        when (setting) {
+                            is FeatureSetting.BooleanSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.IntSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.FloatSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.DoubleSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.StringSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.StringListSetting ->
+                                JsonArray(setting.value.map { JsonPrimitive(it) })
+
+                            is FeatureSetting.EnumSetting<*> -> JsonPrimitive(setting.value.name)
+                            is FeatureSetting.BlockIDSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.EntityIDSetting -> JsonPrimitive(setting.value)
+                            is FeatureSetting.BlockListSetting ->
+                                JsonArray(setting.value.map { JsonPrimitive(it) })
+
+                            is FeatureSetting.EntityListSetting ->
+                                JsonArray(setting.value.map { JsonPrimitive(it) })
+
+                            is FeatureSetting.PlayerListSetting ->
+                                JsonArray(setting.value.map { JsonPrimitive(it) })
+
+                            is FeatureSetting.BlockColorListSetting ->
+                                JsonArray(
+                                    setting.value.map { (blockId, color) ->
+                                        buildJsonObject {
+                                            put("blockId", blockId)
+                                            put("color", color)
+                                        }
+                                    },
+                                )
+                        }
+                )
+            }
+        return FeatureConfig(feature.name, configurableFeature.isEnabled(), settingMap)
     }
 
-// ... (omitted preceding code)
+    // 一時ファイルに書き込んでから置き換えることで、書き込み中にクラッシュしても既存の設定ファイルが壊れないようにする
+    private fun write(
+        configDir: File,
+        snapshot: Snapshot,
+        announce: Boolean,
+    ) {
+        try {
+            if (!configDir.exists()) {
+                configDir.mkdirs()
+            }
+            val configFile = configDir.resolve("config.json")
+            val tempFile = configDir.resolve("config.json.tmp")
+            val jsonString = json.encodeToString(AppConfig.serializer(), snapshot.appConfig)
+            tempFile.writeText(jsonString)
+            val source = tempFile.toPath()
+            val target = configFile.toPath()
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+            } catch (_: AtomicMoveNotSupportedException) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING)
+            }
+            // config.json の書き込み後に、そのサイズと更新時刻を記録したスナップショットを書き出す
+            BinaryConfig.write(
+                configDir.resolve(BinaryConfig.FILE_NAME),
+                configFile,
+                snapshot.appConfig.currentTheme,
+                snapshot.binaryFeatures,
+            )
+            if (announce) {
+                InfiniteClient.log("Configuration saved to ${configFile.absolutePath}")
+            }
+        } catch (e: Exception) {
+            // 書き込みはワーカースレッドで行うため、シリアライズの失敗も含めてここで報告する
+            InfiniteClient.error("Failed to save configuration: ${e.message}")
+            e.printStackTrace()
+        }
+    }
 
+    @OptIn(ExperimentalSerializationApi::class)
     fun loadConfig() {
         val configDir = getConfigDirectory().toFile()
         val configFile = configDir.resolve("config.json")
@@ -130,89 +298,72 @@ object ConfigManager {
         }
 
         try {
-            val jsonString = configFile.readText()
-            val appConfig = json.decodeFromString(AppConfig.serializer(), jsonString)
-
-            InfiniteClient.currentTheme = appConfig.currentTheme // Load currentTheme
-
-            appConfig.features.forEach { featureConfig ->
-                featureCategories.flatMap { it.features }.find { it.name == featureConfig.nameKey }?.let { feature ->
-                    val configurableFeature = feature.instance
-                    if (featureConfig.enabled) {
-                        configurableFeature.enable()
-                    } else {
-                        configurableFeature.disable()
-                    }
-                    featureConfig.settings.forEach { (settingName, jsonElement) ->
-                        configurableFeature.settings.find { it.name == settingName }?.let { setting ->
-                            when (setting) {
-                                is FeatureSetting.BooleanSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                is FeatureSetting.IntSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                is FeatureSetting.FloatSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                is FeatureSetting.DoubleSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                is FeatureSetting.StringSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                is FeatureSetting.StringListSetting ->
-                                    setting.value =
-                                        json
-                                            .decodeFromJsonElement<List<String>>(jsonElement)
-                                            .toMutableList() // **Changed to MutableList**
-
-                                // 🚀 **追加されたBlockIDSettingとEntityIDSettingの処理**
-                                is FeatureSetting.BlockIDSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                is FeatureSetting.EntityIDSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement(jsonElement)
-
-                                // 🚀 **追加されたBlockListSettingの処理**
-                                is FeatureSetting.BlockListSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement<List<String>>(jsonElement).toMutableList()
-
-                                is FeatureSetting.EntityListSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement<List<String>>(jsonElement).toMutableList()
-
-                                is FeatureSetting.PlayerListSetting ->
-                                    setting.value =
-                                        json.decodeFromJsonElement<List<String>>(jsonElement).toMutableList()
-
-                                is FeatureSetting.BlockColorListSetting ->
-                                    setting.value =
-                                        json
-                                            .decodeFromJsonElement<List<Map<String, JsonPrimitive>>>(jsonElement)
-                                            .associate { it["blockId"]!!.content to it["color"]!!.content.toInt() }
-                                            .toMutableMap()
-                                is FeatureSetting.EnumSetting -> {
-                                    val enumName = json.decodeFromJsonElement<String>(jsonElement)
-                                    setting.set(enumName)
-                                }
-                            }
-                        }
-                    }
+            // Feature名からの索引は一度だけ作る (同名のFeatureがある場合は先に登録されたものを優先)
+            val features = HashMap<String, Feature>()
+            featureCategories.forEach { category -> category.features.forEach { features.putIfAbsent(it.name, it) } }
+
+            // config.json と一致するバイナリスナップショットがあれば、JSONの解析を省略する
+            val binaryFile = configDir.resolve(BinaryConfig.FILE_NAME)
+            if (!BinaryConfig.read(binaryFile, configFile, features)) {
+                val appConfig =
+                    configFile.inputStream().buffered().use { json.decodeFromStream(AppConfig.serializer(), it) }
+                InfiniteClient.currentTheme = appConfig.currentTheme // Load currentTheme
+                appConfig.features.forEach { featureConfig ->
+                    features[featureConfig.nameKey]?.let { applyFeatureConfig(it.instance, featureConfig) }
                 }
             }
+            // 読み込みによる変更は保存不要。キャッシュは次回の保存時にすべて作り直す
+            featureConfigCache.clear()
+            dirtyFeatures.clear()
+            pending = false
             InfiniteClient.log("Configuration loaded from ${configFile.absolutePath}")
         } catch (e: Exception) {
             InfiniteClient.error("Failed to load configuration: ${e.message}")
             e.printStackTrace()
         }
     }
+
+    private fun applyFeatureConfig(
+        configurableFeature: ConfigurableFeature,
+        featureConfig: FeatureConfig,
+    ) {
+        if (featureConfig.enabled) {
+            configurableFeature.enable()
+        } else {
+            configurableFeature.disable()
+        }
+        featureConfig.settings.forEach { (settingName, jsonElement) ->
+            configurableFeature.getSetting(settingName)?.let { applySetting(it, jsonElement) }
+        }
+    }
+
+    // JsonElementから各設定の型に合わせて直接値を取り出し、型付きのセッターへ設定する
+    private fun applySetting(
+        setting: FeatureSetting<*>,
+        jsonElement: JsonElement,
+    ) {
+        when (setting) {
+            is FeatureSetting.BooleanSetting -> setting.booleanValue = jsonElement.jsonPrimitive.boolean
+            is FeatureSetting.IntSetting -> setting.intValue = jsonElement.jsonPrimitive.int
+            is FeatureSetting.FloatSetting -> setting.floatValue = jsonElement.jsonPrimitive.float
+            is FeatureSetting.DoubleSetting -> setting.doubleValue = jsonElement.jsonPrimitive.double
+            is FeatureSetting.StringSetting -> setting.value = jsonElement.jsonPrimitive.content
+            is FeatureSetting.BlockIDSetting -> setting.value = jsonElement.jsonPrimitive.content
+            is FeatureSetting.EntityIDSetting -> setting.value = jsonElement.jsonPrimitive.content
+            is FeatureSetting.EnumSetting -> setting.set(jsonElement.jsonPrimitive.content)
+            is FeatureSetting.StringListSetting -> setting.value = stringList(jsonElement)
+            is FeatureSetting.BlockListSetting -> setting.value = stringList(jsonElement)
+            is FeatureSetting.EntityListSetting -> setting.value = stringList(jsonElement)
+            is FeatureSetting.PlayerListSetting -> setting.value = stringList(jsonElement)
+            is FeatureSetting.BlockColorListSetting ->
+                setting.value =
+                    jsonElement.jsonArray.associateTo(mutableMapOf()) {
+                        val entry = it.jsonObject
+                        entry.getValue("blockId").jsonPrimitive.content to entry.getValue("color").jsonPrimitive.int
+                    }
+        }
+    }
+
+    private fun stringList(jsonElement: JsonElement): MutableList<String> =
+        jsonElement.jsonArray.mapTo(mutableListOf()) { it.jsonPrimitive.content }
 }
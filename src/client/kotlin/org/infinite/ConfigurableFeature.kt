@@ -8,6 +8,7 @@ import net.minecraft.client.util.InputUtil
 import org.infinite.libs.client.player.ClientInterface
 import org.infinite.libs.graphics.Graphics2D
 import org.infinite.libs.graphics.Graphics3D
+import org.infinite.libs.infinite.FeatureProfiler
 import org.infinite.libs.world.WorldManager
 import org.infinite.settings.FeatureSetting
 import org.infinite.settings.Property
@@ -36,6 +37,16 @@ abstract class ConfigurableFeature(
     open val preRegisterCommands: List<String> = listOf("enable", "disable", "toggle", "set", "get", "add", "del")
     open val level: FeatureLevel = FeatureLevel.Extend
 
+    // trueの場合、無効な状態でもワールド参加時にstart()を呼び出す (無効な間も参加時の情報を必要とするFeature向け)
+    open val startEagerly: Boolean = false
+
+    // ワールド参加時に無効だったため、start()の呼び出しを最初の有効化まで遅延している
+    @Volatile
+    private var startPending = false
+
+    // InfiniteClientからのフック呼び出しの処理時間 (FeatureProfilerが記録する)
+    internal val timings = FeatureProfiler.FeatureTimings()
+
     // リスナーの同期に使用する専用のロックオブジェクト
     private val listenerLock = Any()
 
@@ -45,6 +56,8 @@ abstract class ConfigurableFeature(
     init {
         // Featureが有効になったとき
         enabled.addListener { _, newValue ->
+            // ティック・描画のディスパッチ表を作り直す
+            FeatureDispatcher.invalidate()
             disabled.value = !newValue
             if (newValue) {
                 // 依存・矛盾の即時解決
@@ -81,6 +94,23 @@ abstract class ConfigurableFeature(
 
     open fun start() {}
 
+    /**
+     * ワールド参加時に呼び出されます。有効なFeature (および [startEagerly] のFeature) はすぐに start() を呼び出し、
+     * それ以外は最初に有効化されるまで start() を遅延します。
+     */
+    internal fun scheduleStart() {
+        if (isEnabled() || startEagerly) {
+            startPending = false
+            start()
+        } else {
+            startPending = true
+        }
+    }
+
+    internal fun cancelPendingStart() {
+        startPending = false
+    }
+
     // --- リスナー登録用API ---
     fun addEnabledChangeListener(listener: (oldValue: Boolean, newValue: Boolean) -> Unit) {
         enabled.addListener(listener)
@@ -128,6 +158,11 @@ abstract class ConfigurableFeature(
 
     fun enable() {
         if (isEnabled()) return
+        // 遅延していたstart()を、有効化の前に実行する
+        if (startPending) {
+            startPending = false
+            start()
+        }
 
         // 1. 依存関係の監視を開始し、リスナーを登録
         startResolver()
@@ -148,7 +183,14 @@ abstract class ConfigurableFeature(
 
     fun isDisabled(): Boolean = disabled.value
 
-    fun getSetting(name: String): FeatureSetting<*>? = settings.find { it.name == name }
+    // 設定名からの索引。settingsはサブクラスで初期化されるため、初回アクセス時に構築する
+    private val settingIndex: Map<String, FeatureSetting<*>> by lazy {
+        val index = HashMap<String, FeatureSetting<*>>()
+        settings.forEach { index.putIfAbsent(it.name, it) }
+        index
+    }
+
+    fun getSetting(name: String): FeatureSetting<*>? = settingIndex[name]
 
     open fun registerCommands(builder: LiteralArgumentBuilder<FabricClientCommandSource>) {}
 
@@ -0,0 +1,99 @@
+package org.infinite
+
+import org.infinite.libs.graphics.Graphics2D
+import org.infinite.libs.graphics.Graphics3D
+import org.infinite.libs.world.WorldManager
+
+/**
+ * ティック・描画・チャンク処理の各フックについて、「有効」かつ「そのフックを実際にオーバーライドしている」
+ * Featureだけを並べたディスパッチ表を保持します。
+ * 表はFeatureの有効/無効が切り替わった時にのみ作り直されるため、毎フレームの処理は有効なFeatureの数にのみ比例します。
+ */
+object FeatureDispatcher {
+    enum class Hook {
+        StartTick,
+        EndTick,
+        Render2d,
+        Render3d,
+        Chunk,
+    }
+
+    private val emptyTable = emptyArray<ConfigurableFeature>()
+
+    @Volatile
+    private var dirty = true
+    private var tables: Array<Array<ConfigurableFeature>> = Array(Hook.entries.size) { emptyTable }
+
+    // クラスごとに、オーバーライドしているフックのビットマスクをキャッシュする
+    private val overrideMasks = HashMap<Class<*>, Int>()
+
+    /**
+     * ディスパッチ表を無効化します。Featureの有効/無効の変更や、Featureの追加/削除時に呼び出されます。
+     */
+    fun invalidate() {
+        dirty = true
+    }
+
+    /**
+     * 指定したフックで呼び出すべきFeatureの配列を返します。返された配列は変更しないでください。
+     */
+    fun features(hook: Hook): Array<ConfigurableFeature> {
+        if (dirty) rebuild()
+        return tables[hook.ordinal]
+    }
+
+    private fun rebuild() {
+        dirty = false
+        val lists = Array(Hook.entries.size) { mutableListOf<ConfigurableFeature>() }
+        for (category in featureCategories) {
+            for (feature in category.features) {
+                val instance = feature.instance
+                if (!instance.isEnabled()) continue
+                val mask = overrideMask(instance.javaClass)
+                for (hook in Hook.entries) {
+                    if ((mask and (1 shl hook.ordinal)) == 0) continue
+                    val matchesTiming =
+                        when (hook) {
+                            Hook.StartTick -> instance.tickTiming == ConfigurableFeature.TickTiming.Start
+                            Hook.EndTick -> instance.tickTiming == ConfigurableFeature.TickTiming.End
+                            else -> true
+                        }
+                    if (matchesTiming) {
+                        lists[hook.ordinal].add(instance)
+                    }
+                }
+            }
+        }
+        tables = Array(Hook.entries.size) { lists[it].toTypedArray() }
+    }
+
+    private fun overrideMask(featureClass: Class<out ConfigurableFeature>): Int =
+        overrideMasks.getOrPut(featureClass) {
+            var mask = 0
+            if (isOverridden(featureClass, "tick")) {
+                mask = mask or (1 shl Hook.StartTick.ordinal) or (1 shl Hook.EndTick.ordinal)
+            }
+            if (isOverridden(featureClass, "render2d", Graphics2D::class.java)) {
+                mask = mask or (1 shl Hook.Render2d.ordinal)
+            }
+            if (isOverridden(featureClass, "render3d", Graphics3D::class.java)) {
+                mask = mask or (1 shl Hook.Render3d.ordinal)
+            }
+            if (isOverridden(featureClass, "handleChunk", WorldManager.Chunk::class.java)) {
+                mask = mask or (1 shl Hook.Chunk.ordinal)
+            }
+            mask
+        }
+
+    private fun isOverridden(
+        featureClass: Class<*>,
+        name: String,
+        vararg parameterTypes: Class<*>,
+    ): Boolean =
+        try {
+            featureClass.getMethod(name, *parameterTypes).declaringClass != ConfigurableFeature::class.java
+        } catch (_: NoSuchMethodException) {
+            // 判定できない場合は安全側に倒して呼び出し対象とする
+            true
+        }
+}
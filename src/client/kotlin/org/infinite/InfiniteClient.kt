@@ -2,6 +2,7 @@ package org.infinite
 
 import net.fabricmc.api.ClientModInitializer
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents
 import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents
@@ -12,6 +13,7 @@ import net.minecraft.text.MutableText
 import net.minecraft.text.Text
 import net.minecraft.util.Formatting
 import net.minecraft.util.math.ColorHelper
+import org.infinite.features.automatic.branchminer.AirComponentCache
 import org.infinite.gui.theme.Theme
 import org.infinite.gui.theme.official.CyberTheme
 import org.infinite.gui.theme.official.HackerTheme
@@ -20,109 +22,200 @@ import org.infinite.gui.theme.official.MinecraftTheme
 import org.infinite.gui.theme.official.PastelTheme
 import org.infinite.gui.theme.official.SmeClanTheme
 import org.infinite.libs.ai.AiInterface
+import org.infinite.libs.ai.pathing.AStarPathPlanner
 import org.infinite.libs.client.control.ControllerInterface
 import org.infinite.libs.graphics.Graphics2D
 import org.infinite.libs.graphics.Graphics3D
+import org.infinite.libs.infinite.FeatureProfiler
 import org.infinite.libs.infinite.InfiniteAddon
 import org.infinite.libs.infinite.InfiniteCommand
 import org.infinite.libs.infinite.InfiniteKeyBind
+import org.infinite.libs.infinite.StartupScheduler
+import org.infinite.libs.metrics.MetricsExporter
+import org.infinite.libs.metrics.MetricsRegistry
+import org.infinite.libs.world.SectionRebuildScheduler
 import org.infinite.libs.world.WorldManager
+import org.infinite.libs.world.WorldSnapshot
+import org.infinite.settings.FeatureSetting
 import org.infinite.utils.LogQueue
 import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
 
 object InfiniteClient : ClientModInitializer {
     private val LOGGER = LoggerFactory.getLogger("InfiniteClient")
+
+    // 翻訳の確認を1つの遅延タスクで行うキーの数
+    private const val TRANSLATION_CHECK_CHUNK = 64
     lateinit var worldManager: WorldManager
     var themes: List<Theme> = listOf()
+        set(value) {
+            field = value
+            onThemeChanged()
+        }
     var currentTheme: String = "infinite"
+        set(value) {
+            field = value
+            onThemeChanged()
+            ConfigManager.markDirty()
+        }
+
+    // テーマ (themes / currentTheme) が変更されるたびに増加する。色のキャッシュの無効化に使用する。
+    var themeRevision: Int = 0
+        private set
+
+    // テーマ一覧が空の時などに使用する既定のテーマ (呼び出しのたびに生成しないよう保持する)
+    private val fallbackTheme: Theme = InfiniteTheme()
+
+    // 解決済みの現在のテーマ。themes / currentTheme の変更時にのみ差し替えられる
+    @Volatile
+    private var resolvedTheme: Theme = fallbackTheme
     var loadedAddons: MutableList<InfiniteAddon> = mutableListOf()
     private val addonFeatureMap: MutableMap<InfiniteAddon, List<FeatureCategory>> = mutableMapOf()
     private val featureInstances: MutableMap<Class<out ConfigurableFeature>, ConfigurableFeature> = mutableMapOf()
 
-    fun theme(name: String = currentTheme): Theme = themes.find { it.name == name } ?: InfiniteTheme()
+    // featureInstancesが作り直されるたびに増加する (SettingRefのキャッシュ無効化に使用)
+    @Volatile
+    var featureRevision: Int = 0
+        private set
+
+    // カテゴリ名・機能名 (小文字) からFeatureを引くための索引。featureCategoriesが変化したら null にして作り直す
+    @Volatile
+    private var featureNameIndex: Map<String, Map<String, ConfigurableFeature>>? = null
+
+    /**
+     * 現在のテーマを返します。解決済みの値を返すだけなので、描画処理から毎フレーム呼び出しても問題ありません。
+     */
+    fun theme(): Theme = resolvedTheme
+
+    fun theme(name: String): Theme = themes.find { it.name == name } ?: fallbackTheme
 
-    private fun checkTranslations(): List<String> {
+    private fun onThemeChanged() {
+        resolvedTheme = theme(currentTheme)
+        themeRevision++
+    }
+
+    // 翻訳キーを割り当て、確認対象のキーを返す。文字列の組み立てのみなので、GUIから参照される前に参加時に同期的に行う
+    private fun assignTranslationKeys(categories: List<FeatureCategory>): List<String> {
         val result = mutableListOf<String>()
-        for (category in featureCategories) {
+        for (category in categories) {
             for (feature in category.features) {
-                val key = feature.generateKey(category.name)
-                if (Text.translatable(key).string == key) {
-                    result.add(key)
-                }
+                result.add(feature.generateKey(category.name))
                 for (setting in feature.instance.settings) {
-                    val key = setting.generateKey(category.name, feature.name, setting.name)
-                    if (Text.translatable(key).string == key) {
-                        result.add(key)
-                    }
+                    result.add(setting.generateKey(category.name, feature.name, setting.name))
                 }
             }
         }
         return result
     }
 
-    private fun loadAddons() {
-        if (!hasLoadedAddons) {
-            hasLoadedAddons = true
-            for (addon in loadedAddons) { // Addon initialize
-                log("Loading addon: ${addon.id} v${addon.version}")
-                val providedCategories = addon.getFeatures()
-                addonFeatureMap[addon] = providedCategories // Store provided categories
-
-                for (addonCategory in providedCategories) {
-                    val existingCategory = featureCategories.find { it.name == addonCategory.name }
-                    if (existingCategory != null) {
-                        // Merge features into existing category
-                        existingCategory.features.addAll(addonCategory.features)
-                    } else {
-                        // Add new category
-                        featureCategories.add(addonCategory)
-                    }
+    // 翻訳の有無の確認 (Text.translatableの解決) は、遅延タスクとして数十件ずつ分割して行う
+    private fun scheduleTranslationCheck(keys: List<String>) {
+        val lackedTranslations = mutableListOf<String>()
+        keys.chunked(TRANSLATION_CHECK_CHUNK).forEach { chunk ->
+            StartupScheduler.schedule("translations") {
+                chunk.filterTo(lackedTranslations) { Text.translatable(it).string == it }
+            }
+        }
+        StartupScheduler.schedule("translations") {
+            if (lackedTranslations.isEmpty()) {
+                log("Mod initialized successfully.")
+            } else {
+                val translationList = lackedTranslations.joinToString(",") { "\"$it\":\"$it\"" }
+                warn("Missing Translations: [$translationList]")
+            }
+        }
+    }
+
+    /**
+     * まだ読み込んでいないアドオンを読み込み、追加されたカテゴリを返します。
+     */
+    private fun loadAddons(): List<FeatureCategory> {
+        if (hasLoadedAddons) return emptyList()
+        hasLoadedAddons = true
+        val addedCategories = mutableListOf<FeatureCategory>()
+        for (addon in loadedAddons) { // Addon initialize
+            log("Loading addon: ${addon.id} v${addon.version}")
+            val providedCategories = addon.getFeatures()
+            addonFeatureMap[addon] = providedCategories // Store provided categories
+
+            for (addonCategory in providedCategories) {
+                val existingCategory = featureCategories.find { it.name == addonCategory.name }
+                if (existingCategory != null) {
+                    // Merge features into existing category
+                    existingCategory.features.addAll(addonCategory.features)
+                } else {
+                    // Add new category
+                    featureCategories.add(addonCategory)
                 }
-                addon.onInitialize()
+            }
+            addedCategories.addAll(providedCategories)
+            addon.onInitialize()
+        }
+        FeatureDispatcher.invalidate()
+        return addedCategories
+    }
+
+    // Featureを登録し、start()を呼び出す (無効なFeatureは最初に有効化されるまで遅延される)
+    private fun registerFeatures(categories: List<FeatureCategory>) {
+        for (category in categories) {
+            for (feature in category.features) {
+                featureInstances[feature.instance.javaClass] = feature.instance
+                ConfigManager.track(feature)
+                feature.instance.scheduleStart()
             }
         }
+        featureRevision++
+        featureNameIndex = null
+        FeatureDispatcher.invalidate()
     }
 
     var hasLoadedAddons = false
 
     override fun onInitializeClient() {
         LogQueue.registerTickEvent()
+        SectionRebuildScheduler.registerTickEvent()
+        ConfigManager.registerTickEvent()
+        StartupScheduler.registerTickEvent()
+        MetricsExporter.registerTickEvent()
 
         InfiniteKeyBind.registerKeybindings()
         ClientPlayConnectionEvents.JOIN.register { _, _, _ ->
-            themes =
-                listOf(
-                    InfiniteTheme(),
-                    SmeClanTheme(),
-                    HackerTheme(),
-                    PastelTheme(),
-                    MinecraftTheme(),
-                    CyberTheme(),
-                )
-            ConfigManager.loadConfig()
-            loadAddons()
-            for (category in featureCategories) {
-                for (features in category.features) {
-                    featureInstances[features.instance.javaClass] = features.instance
-                    features.instance.start()
-                }
+            // 最初のフレームまでに必要な処理 (テーマ・設定・Featureの登録) のみをここで行う
+            if (themes.isEmpty()) {
+                themes =
+                    listOf(
+                        InfiniteTheme(),
+                        SmeClanTheme(),
+                        HackerTheme(),
+                        PastelTheme(),
+                        MinecraftTheme(),
+                        CyberTheme(),
+                    )
             }
+            ConfigManager.loadConfig()
+            val translationKeys = assignTranslationKeys(featureCategories).toMutableList()
+            registerFeatures(featureCategories)
             val modContainer = FabricLoader.getInstance().getModContainer("infinite")
             val modVersion = modContainer.map { it.metadata.version.friendlyString }.orElse("unknown")
 
             log("version $modVersion")
-            val lackedTranslations = checkTranslations()
-            if (lackedTranslations.isEmpty()) {
-                log("Mod initialized successfully.")
-            } else {
-                val translationList = lackedTranslations.joinToString(",") { "\"$it\":\"$it\"" }
-                warn("Missing Translations: [$translationList]")
+
+            // アドオンの読み込みと翻訳の確認は、後続のティックで時間予算内に行う
+            StartupScheduler.schedule("addons") {
+                val addonCategories = loadAddons()
+                if (addonCategories.isNotEmpty()) {
+                    translationKeys += assignTranslationKeys(addonCategories)
+                    registerFeatures(addonCategories)
+                }
             }
+            StartupScheduler.schedule("translations") { scheduleTranslationCheck(translationKeys) }
         }
 
         // --- Event: when player leaves a world ---
         ClientPlayConnectionEvents.DISCONNECT.register { _, _ ->
             ConfigManager.saveConfig()
+            // 保存先はサーバーごとに決まるため、次のワールドに参加する前に書き込みを終えておく
+            ConfigManager.flush()
             for (addon in loadedAddons) { // Addon shutdown
                 addon.onShutdown()
                 addonFeatureMap[addon]?.let { providedCategories ->
@@ -142,9 +235,20 @@ object InfiniteClient : ClientModInitializer {
                     }
                 }
             }
+            FeatureDispatcher.invalidate()
             AiInterface.clear()
+            SectionRebuildScheduler.clear()
+            WorldSnapshot.clear()
+            AStarPathPlanner.clear()
+            AirComponentCache.clear()
+            StartupScheduler.clear()
+            featureCategories.forEach { category -> category.features.forEach { it.instance.cancelPendingStart() } }
             featureInstances.clear()
+            featureRevision++
+            featureNameIndex = null
         }
+        // --- Event: when the client is closing ---
+        ClientLifecycleEvents.CLIENT_STOPPING.register { _ -> ConfigManager.flush() }
         ServerPlayerEvents.AFTER_RESPAWN.register { _, _, _ ->
             for (category in featureCategories) {
                 for (feature in category.features) {
@@ -159,27 +263,27 @@ object InfiniteClient : ClientModInitializer {
         ClientTickEvents.START_CLIENT_TICK.register { _ -> AiInterface.tick() }
         ClientCommandRegistrationCallback.EVENT.register(InfiniteCommand::registerCommands)
         worldManager = WorldManager()
+        MetricsRegistry.gauge("infinite_world_queue_depth", "Chunk and block updates waiting in WorldManager") {
+            worldManager.queue.size.toDouble()
+        }
+        MetricsRegistry.gauge("infinite_ai_running_actions", "AI actions running concurrently in separate lanes") {
+            AiInterface.runningCount().toDouble()
+        }
         ClientTickEvents.START_CLIENT_TICK.register { _ ->
-            for (category in featureCategories) {
-                for (feature in category.features) {
-                    if (feature.instance.isEnabled() && feature.instance.tickTiming ==
-                        ConfigurableFeature.TickTiming.Start
-                    ) {
-                        feature.instance.tick()
-                    }
+            for (feature in FeatureDispatcher.features(FeatureDispatcher.Hook.StartTick)) {
+                // 同じティック内で他のFeatureにより無効化された場合に備えて再確認する
+                if (feature.isEnabled()) {
+                    FeatureProfiler.measure(feature, FeatureProfiler.Hook.Tick) { feature.tick() }
                 }
             }
         }
         ClientTickEvents.END_CLIENT_TICK.register { _ ->
-            for (category in featureCategories) {
-                for (feature in category.features) {
-                    if (feature.instance.isEnabled() && feature.instance.tickTiming ==
-                        ConfigurableFeature.TickTiming.End
-                    ) {
-                        feature.instance.tick()
-                    }
+            for (feature in FeatureDispatcher.features(FeatureDispatcher.Hook.EndTick)) {
+                if (feature.isEnabled()) {
+                    FeatureProfiler.measure(feature, FeatureProfiler.Hook.Tick) { feature.tick() }
                 }
             }
+            FeatureProfiler.tick()
         }
     }
 
@@ -228,16 +332,33 @@ object InfiniteClient : ClientModInitializer {
         return rainbowText
     }
 
+    // プレフィックスの虹色部分と閉じ括弧は色が固定なので一度だけ生成し、各メッセージで共有する (変更はしない)
+    private val rainbowPrefix: Text by lazy { rainbowText("Infinite Client").formatted(Formatting.BOLD) }
+    private val prefixClose: Text by lazy { Text.literal("]: ").formatted(Formatting.RESET) }
+
+    // 種類 (" - Info " など) ごとの色付きラベル。テーマの変更で色が変わった場合のみ作り直す
+    private class PrefixLabel(
+        val color: Int,
+        val text: Text,
+    )
+
+    private val prefixLabels = ConcurrentHashMap<String, PrefixLabel>()
+
     private fun createPrefixedMessage(
         prefixType: String,
         textColor: Int,
-    ): MutableText =
-        Text
+    ): MutableText {
+        val label =
+            prefixLabels[prefixType]?.takeIf { it.color == textColor }
+                ?: PrefixLabel(textColor, Text.literal(prefixType).styled { style -> style.withColor(textColor) })
+                    .also { prefixLabels[prefixType] = it }
+        return Text
             .literal("[")
             .formatted(Formatting.BOLD)
-            .append(rainbowText("Infinite Client").formatted(Formatting.BOLD))
-            .append(Text.literal(prefixType).styled { style -> style.withColor(textColor) })
-            .append(Text.literal("]: ").formatted(Formatting.RESET))
+            .append(rainbowPrefix)
+            .append(label.text)
+            .append(prefixClose)
+    }
 
     private fun logger(text: String) = LOGGER.info(text)
 
@@ -281,7 +402,7 @@ object InfiniteClient : ClientModInitializer {
         LogQueue.enqueueMessage(message) // キューに追加
     }
 
-    // フィーチャー関連の関数は変更なし
+    // フィーチャー関連の関数。毎フレーム呼ばれるmixinからは、SettingRefを使って解決済みのハンドルを保持することを推奨
 
     fun <T : ConfigurableFeature> getFeature(featureClass: Class<T>): T? {
         @Suppress("UNCHECKED_CAST")
@@ -291,12 +412,23 @@ object InfiniteClient : ClientModInitializer {
     fun searchFeature(
         category: String,
         name: String,
-    ): ConfigurableFeature? =
-        featureCategories
-            .find { it.name.equals(category, ignoreCase = true) }
-            ?.features
-            ?.find { it.name.equals(name, ignoreCase = true) }
-            ?.instance
+    ): ConfigurableFeature? {
+        val index = featureNameIndex ?: buildFeatureNameIndex()
+        return index[category.lowercase()]?.get(name.lowercase())
+    }
+
+    private fun buildFeatureNameIndex(): Map<String, Map<String, ConfigurableFeature>> {
+        val index = HashMap<String, HashMap<String, ConfigurableFeature>>()
+        for (category in featureCategories) {
+            // 大文字小文字のみ異なる名前が重複した場合は、従来の線形探索と同じく先に登録されたものを優先する
+            val features = index.getOrPut(category.name.lowercase()) { HashMap() }
+            for (feature in category.features) {
+                features.putIfAbsent(feature.name.lowercase(), feature.instance)
+            }
+        }
+        featureNameIndex = index
+        return index
+    }
 
     fun <T : ConfigurableFeature> isFeatureEnabled(featureClass: Class<T>): Boolean {
         val feature = getFeature(featureClass) ?: return false
@@ -309,8 +441,8 @@ object InfiniteClient : ClientModInitializer {
     ): Boolean {
         val feature = getFeature(featureClass) ?: return false
         if (!feature.isEnabled()) return false
-        val setting = feature.getSetting(settingName)
-        return setting != null && setting.value is Boolean && setting.value as Boolean
+        val setting = feature.getSetting(settingName) as? FeatureSetting.BooleanSetting ?: return false
+        return setting.booleanValue
     }
 
     fun <T : ConfigurableFeature> getSettingFloat(
@@ -320,8 +452,8 @@ object InfiniteClient : ClientModInitializer {
     ): Float {
         val feature = getFeature(featureClass) ?: return defaultValue
         if (!feature.isEnabled()) return defaultValue
-        val setting = feature.getSetting(settingName)
-        return if (setting != null && setting.value is Float) setting.value as Float else defaultValue
+        val setting = feature.getSetting(settingName) as? FeatureSetting.FloatSetting ?: return defaultValue
+        return setting.floatValue
     }
 
     fun <T : ConfigurableFeature> getSettingInt(
@@ -331,8 +463,8 @@ object InfiniteClient : ClientModInitializer {
     ): Int {
         val feature = getFeature(featureClass) ?: return defaultValue
         if (!feature.isEnabled()) return defaultValue
-        val setting = feature.getSetting(settingName)
-        return if (setting != null && setting.value is Int) setting.value as Int else defaultValue
+        val setting = feature.getSetting(settingName) as? FeatureSetting.IntSetting ?: return defaultValue
+        return setting.intValue
     }
 
     fun handle2dGraphics(
@@ -340,14 +472,12 @@ object InfiniteClient : ClientModInitializer {
         tickCounter: RenderTickCounter,
     ) {
         val graphics2D = Graphics2D(context, tickCounter)
-        for (category in featureCategories) {
-            for (features in category.features) {
-                val feature = features.instance
-                if (feature.isEnabled()) {
-                    feature.render2d(graphics2D)
-                }
+        for (feature in FeatureDispatcher.features(FeatureDispatcher.Hook.Render2d)) {
+            if (feature.isEnabled()) {
+                FeatureProfiler.measure(feature, FeatureProfiler.Hook.Render2d) { feature.render2d(graphics2D) }
             }
         }
+        FeatureProfiler.render(graphics2D)
     }
 
     fun handle3dGraphics(
@@ -375,12 +505,9 @@ object InfiniteClient : ClientModInitializer {
                 vector4f,
                 bl,
             )
-        for (category in featureCategories) {
-            for (features in category.features) {
-                val feature = features.instance
-                if (feature.isEnabled()) {
-                    feature.render3d(graphics3D)
-                }
+        for (feature in FeatureDispatcher.features(FeatureDispatcher.Hook.Render3d)) {
+            if (feature.isEnabled()) {
+                FeatureProfiler.measure(feature, FeatureProfiler.Hook.Render3d) { feature.render3d(graphics3D) }
             }
         }
         graphics3D.render()
@@ -388,12 +515,9 @@ object InfiniteClient : ClientModInitializer {
 
     fun handleWorldSystem() {
         val worldChunk = worldManager.queue.removeFirstOrNull() ?: return
-        for (category in featureCategories) {
-            for (features in category.features) {
-                val feature = features.instance
-                if (feature.isEnabled()) {
-                    feature.handleChunk(worldChunk)
-                }
+        for (feature in FeatureDispatcher.features(FeatureDispatcher.Hook.Chunk)) {
+            if (feature.isEnabled()) {
+                FeatureProfiler.measure(feature, FeatureProfiler.Hook.Chunk) { feature.handleChunk(worldChunk) }
             }
         }
     }
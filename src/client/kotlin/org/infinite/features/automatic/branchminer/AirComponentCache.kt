@@ -0,0 +1,122 @@
+package org.infinite.features.automatic.branchminer
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.ChunkPos
+import net.minecraft.util.math.Direction
+import net.minecraft.world.World
+import org.infinite.libs.world.WorldManager
+import org.infinite.utils.block.FloodFill
+
+/**
+ * BranchMinerの洞窟検出のために、つながった空気ブロックの塊 (連結成分) の大きさをキャッシュします。
+ *
+ * 空気ブロックは初めて調べたときに成分IDを割り当てられ、以降の問い合わせは成分の大きさを引くだけで済みます。
+ * 大きさはしきい値で打ち切って数えるため、しきい値以上の成分は一部のブロックだけにIDが付きます。
+ * その後、別のブロックからの探索がIDの付いたブロックに達した場合は、同じ成分として探索を打ち切ります。
+ *
+ * キャッシュ済みのブロック自体か、それに隣接するブロックが更新された場合は、キャッシュ全体を破棄します。
+ * キャッシュ済みのブロックを含むチャンクが読み込み直された場合も同様です。
+ * 破棄は [WorldManager] がパケットを受け取った時点で直接行うため、イベントキューの処理を待たずにキャッシュが最新に保たれます。
+ *
+ * メインスレッドからのみ使用してください。
+ */
+internal object AirComponentCache {
+    private const val NONE = -1
+    private val DIRECTIONS = Direction.entries.toTypedArray()
+
+    private val componentOf = Long2IntOpenHashMap().apply { defaultReturnValue(NONE) }
+    private val componentSizes = IntArrayList()
+
+    // キャッシュ済みのブロックを含むチャンク (ChunkPos.toLong)
+    private val chunks = LongOpenHashSet()
+    private var threshold = -1
+
+    // キャッシュを作ったワールド。ディメンションの移動などでワールドが変わった場合は破棄する
+    private var cachedWorld: World? = null
+
+    /**
+     * [start] (空気ブロック) を含む成分の大きさを、[threshold] を上限として返します。
+     */
+    fun componentSize(
+        world: World,
+        start: BlockPos,
+        threshold: Int,
+    ): Int {
+        if (threshold != this.threshold || world !== cachedWorld) {
+            clear()
+            this.threshold = threshold
+            cachedWorld = world
+        }
+        val cached = componentOf.get(start.asLong())
+        if (cached != NONE) return componentSizes.getInt(cached)
+
+        val visited = LongOpenHashSet()
+        var reached = NONE
+        val fill = FloodFill(maxAccepted = threshold)
+        val count =
+            fill.run(start, visited) { pos ->
+                val id = componentOf.get(pos.asLong())
+                if (id != NONE) {
+                    // 既知の成分につながった
+                    reached = id
+                    fill.stop()
+                    false
+                } else {
+                    world.getBlockState(pos).isAir
+                }
+            }
+
+        val id =
+            if (reached != NONE) {
+                reached
+            } else {
+                componentSizes.add(count.coerceAtMost(threshold))
+                componentSizes.size - 1
+            }
+        val iterator = visited.iterator()
+        while (iterator.hasNext()) {
+            val key = iterator.nextLong()
+            componentOf.put(key, id)
+            chunks.add(ChunkPos.toLong(BlockPos.unpackLongX(key) shr 4, BlockPos.unpackLongZ(key) shr 4))
+        }
+        return componentSizes.getInt(id)
+    }
+
+    /**
+     * チャンクが読み込まれたときに [WorldManager] から呼び出されます。
+     */
+    fun onChunkLoad(
+        chunkX: Int,
+        chunkZ: Int,
+    ) {
+        if (chunks.contains(ChunkPos.toLong(chunkX, chunkZ))) clear()
+    }
+
+    /**
+     * ブロックが更新されたときに [WorldManager] から呼び出されます。
+     */
+    fun onBlockUpdate(pos: BlockPos) {
+        if (componentOf.isEmpty()) return
+        if (affects(pos)) clear()
+    }
+
+    // 更新されたブロック自体がキャッシュ済みか、キャッシュ済みのブロックに隣接していれば成分が変わりうる
+    private fun affects(pos: BlockPos): Boolean {
+        val key = pos.asLong()
+        if (componentOf.containsKey(key)) return true
+        for (direction in DIRECTIONS) {
+            if (componentOf.containsKey(BlockPos.offset(key, direction))) return true
+        }
+        return false
+    }
+
+    fun clear() {
+        cachedWorld = null
+        componentOf.clear()
+        componentSizes.clear()
+        chunks.clear()
+    }
+}
@@ -1,19 +1,27 @@
 package org.infinite.features.automatic.branchminer
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
 import net.minecraft.block.Blocks
 import net.minecraft.screen.slot.SlotActionType
 import net.minecraft.text.Text
+import net.minecraft.util.math.BlockBox
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.Direction
 import org.infinite.ConfigurableFeature
 import org.infinite.InfiniteClient
+import org.infinite.features.utils.tool.AutoTool
 import org.infinite.libs.ai.AiInterface
+import org.infinite.libs.ai.actions.block.BreakBlockAction
 import org.infinite.libs.ai.actions.block.MineBlockAction
 import org.infinite.libs.ai.actions.movement.PathMovementAction
 import org.infinite.libs.ai.interfaces.AiAction
 import org.infinite.libs.client.inventory.ContainerManager
 import org.infinite.libs.client.inventory.InventoryManager
+import org.infinite.libs.world.WorldSnapshot
 import org.infinite.settings.FeatureSetting
+import org.infinite.utils.block.BlockUtils
+import org.infinite.utils.block.FloodFill
+import java.util.concurrent.CompletableFuture
 import kotlin.math.abs
 
 private val Direction.stepX: Int
@@ -127,9 +135,15 @@ class BranchMiner : ConfigurableFeature() {
     private var branchBlocksToMine: MutableList<BlockPos> = mutableListOf()
     private var exposedOres: MutableList<BlockPos> = mutableListOf()
     private var currentOreIndex = 0
+
+    // exposedOres に含まれる (または調べた結果、経路から除いた) 鉱石の位置
+    private val knownOres = LongOpenHashSet()
     private var collectedItems: MutableMap<String, Int> = mutableMapOf()
     private var waitTicks = 0
 
+    // 実行中のチェスト探索
+    private var chestSearch: CompletableFuture<*>? = null
+
     override fun enabled() {
         state = State.Initialize
         clearState()
@@ -148,10 +162,18 @@ class BranchMiner : ConfigurableFeature() {
         branchEndPosition = null
         nearestChest = null
         branchBlocksToMine.clear()
-        exposedOres.clear()
-        currentOreIndex = 0
+        resetOres()
         collectedItems.clear()
         waitTicks = 0
+        AirComponentCache.clear()
+        chestSearch?.cancel(false)
+        chestSearch = null
+    }
+
+    private fun resetOres() {
+        exposedOres.clear()
+        knownOres.clear()
+        currentOreIndex = 0
     }
 
     override fun tick() {
@@ -183,13 +205,10 @@ class BranchMiner : ConfigurableFeature() {
         initialDirection = Direction.fromHorizontalDegrees(yaw.toDouble())
         branchStartPosition = pos.offset(initialDirection!!)
 
-        // チェストを検索
-        nearestChest = findNearestChest(pos, chestSearchRadius.value)
+        // チェストを検索 (ワーカースレッドで行い、結果は後のティックで届く)
+        searchNearestChest(pos, chestSearchRadius.value)
 
         InfiniteClient.log(Text.literal("§a[BranchMiner] Initialized at ${pos.toShortString()}"))
-        if (nearestChest != null) {
-            InfiniteClient.log(Text.literal("§a[BranchMiner] Chest found at ${nearestChest?.toShortString()}"))
-        }
 
         state = State.Scan
     }
@@ -279,7 +298,8 @@ class BranchMiner : ConfigurableFeature() {
     }
 
     private fun handleBranch() {
-        if (AiInterface.actions.isNotEmpty()) return
+        // 採掘と終端への移動が済むまで待つ
+        if (AiInterface.isBusy(AiAction.Lane.Movement, AiAction.Lane.Interaction)) return
 
         if (branchBlocksToMine.isEmpty()) {
             // 採掘完了、終端へ移動
@@ -328,7 +348,8 @@ class BranchMiner : ConfigurableFeature() {
     }
 
     private fun handleMining() {
-        if (AiInterface.actions.isNotEmpty()) return
+        // 鉱石は1つずつ掘る。直前の鉱石のアイテム回収 (移動) が残っていても、次の鉱石の破壊は並行して始める
+        if (AiInterface.isBusy(AiAction.Lane.Interaction)) return
 
         // 初回のみ壁面スキャン
         if (exposedOres.isEmpty() && currentOreIndex == 0) {
@@ -339,9 +360,21 @@ class BranchMiner : ConfigurableFeature() {
                 return
             }
 
-            // ブランチ終端から開始点へ向かう順にソート
-            sortOresByDistance()
-            InfiniteClient.log(Text.literal("§a[BranchMiner] Found ${exposedOres.size} ore blocks"))
+            // 移動と破壊の時間が短くなる順に並べ替える
+            val found = exposedOres.size
+            val route = planOreRoute(player?.blockPos ?: branchEndPosition ?: return, exposedOres)
+            exposedOres = route.order.toMutableList()
+            InfiniteClient.log(
+                Text.literal(
+                    "§a[BranchMiner] Found $found ore blocks" +
+                        (if (route.skipped > 0) " (${route.skipped} skipped: too slow to break)" else "") +
+                        ", estimated ${"%.1f".format(route.estimatedTicks / 20.0)}s",
+                ),
+            )
+            if (exposedOres.isEmpty()) {
+                state = State.Check
+                return
+            }
         }
 
         // 全ての鉱石を採掘完了
@@ -352,20 +385,39 @@ class BranchMiner : ConfigurableFeature() {
             return
         }
 
-        // 現在の鉱石を採掘
+        // 現在の鉱石を採掘 (手が届き、見えている場合は移動しない)
+        val orePos = exposedOres[currentOreIndex]
+        val params = BlockUtils.getBlockBreakingParams(orePos)
+        if (params == null || !params.lineOfSight || params.distanceSq > REACH_DISTANCE_SQ) {
+            // 接近する移動と破壊を同時に追加し、手が届いた時点で破壊を始める
+            AiInterface.add(
+                PathMovementAction(
+                    x = orePos.x,
+                    y = orePos.y,
+                    z = orePos.z,
+                    radius = null,
+                    stateRegister = { if (isEnabled()) null else AiAction.AiActionState.Failure },
+                ),
+            )
+        }
+        breakCurrentOre()
+    }
+
+    // Baritoneを使わずにその場で破壊する。移動とはレーンが重ならないため、移動系のアクションと並行して進む
+    private fun breakCurrentOre() {
         val orePos = exposedOres[currentOreIndex]
+
         AiInterface.add(
-            PathMovementAction(
-                x = orePos.x,
-                y = orePos.y,
-                z = orePos.z,
-                radius = null,
+            BreakBlockAction(
+                pos = orePos,
+                reachDistance = REACH_DISTANCE,
                 stateRegister = { if (isEnabled()) null else AiAction.AiActionState.Failure },
                 onSuccessAction = {
-                    mineCurrentOre()
+                    onOreMined(orePos)
                 },
                 onFailureAction = {
-                    mineCurrentOre() // 移動失敗しても採掘を試みる
+                    // 届かない・見えないまま時間切れになった場合は、Baritoneで掘り直す
+                    if (isEnabled()) mineCurrentOre()
                 },
             ),
         )
@@ -379,11 +431,7 @@ class BranchMiner : ConfigurableFeature() {
                 blockPosList = mutableListOf(orePos),
                 stateRegister = { if (isEnabled()) null else AiAction.AiActionState.Failure },
                 onSuccessAction = {
-                    // 新たに露出した鉱石をチェック
-                    checkNewlyExposedOres(orePos)
-                    // 掘った直後に近くのアイテムを回収
-                    collectNearbyItems(orePos)
-                    currentOreIndex++
+                    onOreMined(orePos)
                 },
                 onFailureAction = {
                     currentOreIndex++
@@ -392,6 +440,14 @@ class BranchMiner : ConfigurableFeature() {
         )
     }
 
+    private fun onOreMined(orePos: BlockPos) {
+        // 新たに露出した鉱石をチェック
+        checkNewlyExposedOres(orePos)
+        // 掘った直後に近くのアイテムを回収
+        collectNearbyItems(orePos)
+        currentOreIndex++
+    }
+
     private fun collectNearbyItems(centerPos: BlockPos) {
         val currentWorld = world ?: return
 
@@ -428,7 +484,8 @@ class BranchMiner : ConfigurableFeature() {
     }
 
     private fun handleCheck() {
-        if (AiInterface.actions.isNotEmpty()) return
+        // アイテムの回収とチェストへの移動が済むまで待つ
+        if (AiInterface.isBusy(AiAction.Lane.Movement, AiAction.Lane.Interaction, AiAction.Lane.Inventory)) return
 
         // インベントリ内のアイテムを集計
         countInventoryItems()
@@ -537,7 +594,7 @@ class BranchMiner : ConfigurableFeature() {
     }
 
     private fun handleNext() {
-        if (AiInterface.actions.isNotEmpty()) return
+        if (AiInterface.isBusy(AiAction.Lane.Movement, AiAction.Lane.Interaction, AiAction.Lane.Inventory)) return
 
         val currentStartPos = branchStartPosition ?: return
         val mainStartPos = initialPosition?.offset(initialDirection!!) ?: return
@@ -577,8 +634,7 @@ class BranchMiner : ConfigurableFeature() {
                     onSuccessAction = {
                         // 次のブランチは、新しいメイン通路位置から前方へ
                         branchStartPosition = nextMainPos
-                        exposedOres.clear()
-                        currentOreIndex = 0
+                        resetOres()
                         state = State.Scan
                     },
                     onFailureAction = {
@@ -597,14 +653,12 @@ class BranchMiner : ConfigurableFeature() {
                     stateRegister = { if (isEnabled()) null else AiAction.AiActionState.Failure },
                     onSuccessAction = {
                         branchStartPosition = nextMainPos
-                        exposedOres.clear()
-                        currentOreIndex = 0
+                        resetOres()
                         state = State.Scan
                     },
                     onFailureAction = {
                         branchStartPosition = nextMainPos
-                        exposedOres.clear()
-                        currentOreIndex = 0
+                        resetOres()
                         state = State.Scan
                     },
                 ),
@@ -661,25 +715,52 @@ class BranchMiner : ConfigurableFeature() {
         )
     }
 
+    private fun searchNearestChest(
+        center: BlockPos,
+        radius: Int,
+    ) {
+        val currentWorld = world ?: return
+        chestSearch?.cancel(false)
+        val search =
+            WorldSnapshot.supply(currentWorld, BlockBox(center).expand(radius)) { snapshot ->
+                findNearestChest(snapshot, center, radius)
+            }
+        chestSearch = search
+        search.whenComplete { chest, error ->
+            // キャンセルされた探索や、新しい探索に置き換えられた探索の結果は反映しない
+            if (chestSearch !== search) return@whenComplete
+            // 失敗した場合も探索中の状態を解除し、チェストが見つからなかったものとして扱う
+            chestSearch = null
+            if (error != null) {
+                InfiniteClient.error("[BranchMiner] Chest search failed: ${error.message}")
+                error.printStackTrace()
+                return@whenComplete
+            }
+            nearestChest = chest
+            if (chest != null) {
+                InfiniteClient.log(Text.literal("§a[BranchMiner] Chest found at ${chest.toShortString()}"))
+            }
+        }
+    }
+
+    // ワーカースレッドから呼び出されるため、スナップショット以外の状態には触れない
     private fun findNearestChest(
+        snapshot: WorldSnapshot,
         center: BlockPos,
         radius: Int,
     ): BlockPos? {
-        val currentWorld = world ?: return null
         var nearest: BlockPos? = null
-        var minDistance = Double.MAX_VALUE
+        var minDistance = Int.MAX_VALUE
 
         for (x in -radius..radius) {
             for (y in -radius..radius) {
                 for (z in -radius..radius) {
-                    val checkPos = center.add(x, y, z)
-                    val state = currentWorld.getBlockState(checkPos)
-
-                    if (state?.block == Blocks.CHEST || state?.block == Blocks.TRAPPED_CHEST) {
-                        val distance = center.getSquaredDistance(checkPos)
+                    val block = snapshot.getBlockState(center.x + x, center.y + y, center.z + z).block
+                    if (block == Blocks.CHEST || block == Blocks.TRAPPED_CHEST) {
+                        val distance = x * x + y * y + z * z
                         if (distance < minDistance) {
                             minDistance = distance
-                            nearest = checkPos
+                            nearest = center.add(x, y, z)
                         }
                     }
                 }
@@ -694,32 +775,7 @@ class BranchMiner : ConfigurableFeature() {
         maxCount: Int,
     ): Int {
         val currentWorld = world ?: return 0
-        val visited = mutableSetOf<BlockPos>()
-        val queue = ArrayDeque<BlockPos>()
-
-        queue.add(startPos)
-        visited.add(startPos)
-
-        while (queue.isNotEmpty() && visited.size < maxCount) {
-            val current = queue.removeFirst()
-
-            for (direction in Direction.entries) {
-                val neighbor = current.offset(direction)
-                if (neighbor !in visited) {
-                    val state = currentWorld.getBlockState(neighbor)
-                    if (state?.isAir == true) {
-                        visited.add(neighbor)
-                        queue.add(neighbor)
-
-                        if (visited.size >= maxCount) {
-                            return visited.size
-                        }
-                    }
-                }
-            }
-        }
-
-        return visited.size
+        return AirComponentCache.componentSize(currentWorld, startPos, maxCount)
     }
 
     private fun scanWallsForOres() {
@@ -729,7 +785,8 @@ class BranchMiner : ConfigurableFeature() {
         val currentWorld = world ?: return
 
         exposedOres.clear()
-        val allOrePositions = mutableSetOf<BlockPos>()
+        knownOres.clear()
+        val allOrePositions = knownOres
         val distance = calculateDistance(startPos, endPos, direction)
 
         for (i in 0..distance) {
@@ -738,7 +795,7 @@ class BranchMiner : ConfigurableFeature() {
             // 下のブロックの周囲をチェック
             for (checkDirection in Direction.entries) {
                 val checkPos = centerPos.offset(checkDirection)
-                if (checkPos !in allOrePositions) {
+                if (checkPos.asLong() !in allOrePositions) {
                     val state = currentWorld.getBlockState(checkPos)
                     if (isOreBlock(state?.block)) {
                         val connectedOres = mutableListOf<BlockPos>()
@@ -752,7 +809,7 @@ class BranchMiner : ConfigurableFeature() {
             val upperPos = centerPos.up()
             for (checkDirection in Direction.entries) {
                 val checkPos = upperPos.offset(checkDirection)
-                if (checkPos !in allOrePositions) {
+                if (checkPos.asLong() !in allOrePositions) {
                     val state = currentWorld.getBlockState(checkPos)
                     if (isOreBlock(state?.block)) {
                         val connectedOres = mutableListOf<BlockPos>()
@@ -764,86 +821,88 @@ class BranchMiner : ConfigurableFeature() {
         }
     }
 
-    private fun sortOresByDistance() {
-        val endPos = branchEndPosition ?: return
-        exposedOres.sortBy { it.getSquaredDistance(endPos) }
+    // 鉱石を掘る順序を計画する。Baritoneは掘る際にツールを持ち替えるため、破壊時間はインベントリ内の最適なツールで見積もる
+    private fun planOreRoute(
+        start: BlockPos,
+        ores: List<BlockPos>,
+    ): OreRoutePlanner.Route {
+        val autoTool = InfiniteClient.getFeature(AutoTool::class.java)
+        val currentWorld = world
+        return OreRoutePlanner.plan(
+            start,
+            ores.map { pos ->
+                val state = currentWorld?.getBlockState(pos)
+                val breakingTicks =
+                    if (autoTool != null && state != null) {
+                        autoTool.toolFor(state).breakingTicks
+                    } else {
+                        BlockUtils.getBlockBreakingParams(pos)?.breakingTicks ?: Float.POSITIVE_INFINITY
+                    }
+                OreRoutePlanner.Ore(pos, breakingTicks)
+            },
+        )
     }
 
+    // 探索のたびに調べるため、集合は一度だけ生成する
+    private val oreBlocks =
+        setOf(
+            Blocks.COAL_ORE,
+            Blocks.DEEPSLATE_COAL_ORE,
+            Blocks.IRON_ORE,
+            Blocks.DEEPSLATE_IRON_ORE,
+            Blocks.COPPER_ORE,
+            Blocks.DEEPSLATE_COPPER_ORE,
+            Blocks.GOLD_ORE,
+            Blocks.DEEPSLATE_GOLD_ORE,
+            Blocks.DIAMOND_ORE,
+            Blocks.DEEPSLATE_DIAMOND_ORE,
+            Blocks.EMERALD_ORE,
+            Blocks.DEEPSLATE_EMERALD_ORE,
+            Blocks.LAPIS_ORE,
+            Blocks.DEEPSLATE_LAPIS_ORE,
+            Blocks.REDSTONE_ORE,
+            Blocks.DEEPSLATE_REDSTONE_ORE,
+            Blocks.NETHER_QUARTZ_ORE,
+            Blocks.NETHER_GOLD_ORE,
+            Blocks.ANCIENT_DEBRIS,
+        )
+
     private fun isOreBlock(block: net.minecraft.block.Block?): Boolean {
         if (block == null) return false
-
-        val oreBlocks =
-            setOf(
-                Blocks.COAL_ORE,
-                Blocks.DEEPSLATE_COAL_ORE,
-                Blocks.IRON_ORE,
-                Blocks.DEEPSLATE_IRON_ORE,
-                Blocks.COPPER_ORE,
-                Blocks.DEEPSLATE_COPPER_ORE,
-                Blocks.GOLD_ORE,
-                Blocks.DEEPSLATE_GOLD_ORE,
-                Blocks.DIAMOND_ORE,
-                Blocks.DEEPSLATE_DIAMOND_ORE,
-                Blocks.EMERALD_ORE,
-                Blocks.DEEPSLATE_EMERALD_ORE,
-                Blocks.LAPIS_ORE,
-                Blocks.DEEPSLATE_LAPIS_ORE,
-                Blocks.REDSTONE_ORE,
-                Blocks.DEEPSLATE_REDSTONE_ORE,
-                Blocks.NETHER_QUARTZ_ORE,
-                Blocks.NETHER_GOLD_ORE,
-                Blocks.ANCIENT_DEBRIS,
-            )
-
         return block in oreBlocks
     }
 
     private fun findConnectedOres(
         startPos: BlockPos,
         oreList: MutableList<BlockPos>,
-        globalVisited: MutableSet<BlockPos>,
+        globalVisited: LongOpenHashSet,
     ) {
         val currentWorld = world ?: return
-        val visited = mutableSetOf<BlockPos>()
-        val queue = ArrayDeque<BlockPos>()
-
-        queue.add(startPos)
-        visited.add(startPos)
-        globalVisited.add(startPos)
-
-        while (queue.isNotEmpty()) {
-            val current = queue.removeFirst()
-            oreList.add(current)
-
-            for (direction in Direction.entries) {
-                val neighbor = current.offset(direction)
-                if (neighbor !in visited && neighbor !in globalVisited) {
-                    val state = currentWorld.getBlockState(neighbor)
-                    if (isOreBlock(state?.block)) {
-                        visited.add(neighbor)
-                        globalVisited.add(neighbor)
-                        queue.add(neighbor)
-                    }
-                }
-            }
+        FloodFill().run(startPos, globalVisited, { oreList.add(it.toImmutable()) }) {
+            isOreBlock(currentWorld.getBlockState(it).block)
         }
     }
 
     private fun checkNewlyExposedOres(minedPos: BlockPos) {
         val currentWorld = world ?: return
 
+        val connectedOres = mutableListOf<BlockPos>()
         for (direction in Direction.entries) {
             val checkPos = minedPos.offset(direction)
-            if (checkPos !in exposedOres) {
+            if (checkPos.asLong() !in knownOres) {
                 val state = currentWorld.getBlockState(checkPos)
                 if (isOreBlock(state?.block)) {
-                    val connectedOres = mutableListOf<BlockPos>()
-                    val globalVisited = exposedOres.toMutableSet()
-                    findConnectedOres(checkPos, connectedOres, globalVisited)
-                    exposedOres.addAll(connectedOres)
+                    findConnectedOres(checkPos, connectedOres, knownOres)
                 }
             }
         }
+        if (connectedOres.isEmpty()) return
+
+        // 残りの鉱石と合わせて、掘った位置から順序を計画し直す
+        val remaining = exposedOres.subList(currentOreIndex + 1, exposedOres.size)
+        val route = planOreRoute(minedPos, remaining + connectedOres)
+        remaining.clear()
+        remaining.addAll(route.order)
     }
 
     private fun calculateDistance(
@@ -914,4 +973,10 @@ class BranchMiner : ConfigurableFeature() {
         }
         InfiniteClient.log(Text.literal("§e[BranchMiner] Empty slots: ${InventoryManager.emptySlots}"))
     }
+
+    companion object {
+        // 移動せずに鉱石を掘れる距離 (目の位置から、ブロックの面まで)
+        private const val REACH_DISTANCE = 4.5
+        private const val REACH_DISTANCE_SQ = REACH_DISTANCE * REACH_DISTANCE
+    }
 }
@@ -0,0 +1,151 @@
+package org.infinite.features.automatic.branchminer
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Vec3d
+import org.infinite.utils.block.FloodFill
+
+/**
+ * BranchMinerが鉱石を掘る順序を決めます。
+ *
+ * 隣接する鉱石をまとめた塊 (クラスタ) を巡回セールスマン問題の都市とみなし、
+ * 出発点から最も近いクラスタを順にたどる経路 (最近傍法) を作ってから、2-opt法で移動距離を縮めます。
+ * クラスタの中の鉱石は、直前の位置から最も近いものから順に掘ります。
+ *
+ * 所要時間はティック単位で見積もり、移動は歩く速さから、破壊は [Ore.breakingTicks] から求めます。
+ * 破壊に [MAX_BREAKING_TICKS] より長くかかる鉱石 (適正なツールがない場合など) は、経路から除きます。
+ */
+internal object OreRoutePlanner {
+    /**
+     * @param breakingTicks 破壊にかかるティック数 ([org.infinite.utils.block.BlockUtils.getBlockBreakingParams] から求める)
+     */
+    class Ore(
+        val pos: BlockPos,
+        val breakingTicks: Float,
+    )
+
+    /**
+     * @param order 掘る順に並べた鉱石の位置
+     * @param skipped 破壊に時間がかかりすぎるため除いた鉱石の数
+     * @param estimatedTicks 移動と破壊にかかる時間の見積もり
+     */
+    class Route(
+        val order: List<BlockPos>,
+        val skipped: Int,
+        val estimatedTicks: Double,
+    )
+
+    // 1ブロック歩くのにかかるティック数 (歩く速さ 4.317 m/s)
+    private const val TICKS_PER_BLOCK = 20.0 / 4.317
+
+    // これより破壊に時間がかかる鉱石は掘らない (10秒)
+    const val MAX_BREAKING_TICKS = 200f
+
+    // 2-opt法で改善を繰り返す回数の上限
+    private const val MAX_TWO_OPT_PASSES = 32
+
+    private class Cluster(
+        val ores: List<Ore>,
+    ) {
+        val centroid: Vec3d =
+            Vec3d(
+                ores.sumOf { it.pos.x + 0.5 } / ores.size,
+                ores.sumOf { it.pos.y + 0.5 } / ores.size,
+                ores.sumOf { it.pos.z + 0.5 } / ores.size,
+            )
+    }
+
+    fun plan(
+        start: BlockPos,
+        ores: List<Ore>,
+    ): Route {
+        val reachable = ores.filter { it.breakingTicks <= MAX_BREAKING_TICKS }
+        if (reachable.isEmpty()) return Route(emptyList(), ores.size, 0.0)
+
+        val startPoint = Vec3d.ofCenter(start)
+        val clusters = cluster(reachable)
+        val tour = twoOpt(startPoint, nearestNeighborTour(startPoint, clusters))
+
+        val order = ArrayList<BlockPos>(reachable.size)
+        var travelBlocks = 0.0
+        var current = startPoint
+        for (cluster in tour) {
+            val remaining = cluster.ores.toMutableList()
+            while (remaining.isNotEmpty()) {
+                val nearest = remaining.minBy { Vec3d.ofCenter(it.pos).squaredDistanceTo(current) }
+                remaining.remove(nearest)
+                val next = Vec3d.ofCenter(nearest.pos)
+                travelBlocks += next.distanceTo(current)
+                current = next
+                order.add(nearest.pos)
+            }
+        }
+        val breakingTicks = reachable.sumOf { it.breakingTicks.toDouble() }
+        return Route(order, ores.size - reachable.size, travelBlocks * TICKS_PER_BLOCK + breakingTicks)
+    }
+
+    // 6方向に隣接する鉱石を同じクラスタにまとめる
+    private fun cluster(ores: List<Ore>): List<Cluster> {
+        val byPos = HashMap<Long, Ore>(ores.size)
+        ores.forEach { byPos[it.pos.asLong()] = it }
+        val visited = LongOpenHashSet(ores.size)
+        val fill = FloodFill()
+        val clusters = ArrayList<Cluster>()
+        for (ore in ores) {
+            if (ore.pos.asLong() in visited) continue
+            val members = ArrayList<Ore>()
+            fill.run(ore.pos, visited, { pos -> byPos[pos.asLong()]?.let { members.add(it) } }) { pos ->
+                byPos.containsKey(pos.asLong())
+            }
+            clusters.add(Cluster(members))
+        }
+        return clusters
+    }
+
+    private fun nearestNeighborTour(
+        start: Vec3d,
+        clusters: List<Cluster>,
+    ): MutableList<Cluster> {
+        val remaining = clusters.toMutableList()
+        val tour = ArrayList<Cluster>(clusters.size)
+        var current = start
+        while (remaining.isNotEmpty()) {
+            val nearest = remaining.minBy { it.centroid.squaredDistanceTo(current) }
+            remaining.remove(nearest)
+            tour.add(nearest)
+            current = nearest.centroid
+        }
+        return tour
+    }
+
+    // 出発点を固定し、終点は自由な (戻らない) 経路として2-opt法で改善する
+    private fun twoOpt(
+        start: Vec3d,
+        tour: MutableList<Cluster>,
+    ): List<Cluster> {
+        if (tour.size < 3) return tour
+        fun point(index: Int): Vec3d = if (index < 0) start else tour[index].centroid
+        repeat(MAX_TWO_OPT_PASSES) {
+            var improved = false
+            for (i in 0 until tour.size - 1) {
+                for (j in i + 1 until tour.size) {
+                    // tour[i..j] を反転した場合の、前後の辺の長さの変化を調べる
+                    val before = point(i - 1).distanceTo(point(i))
+                    val after = point(i - 1).distanceTo(point(j))
+                    val tail =
+                        if (j + 1 < tour.size) {
+                            point(j + 1).distanceTo(point(i)) - point(j + 1).distanceTo(point(j))
+                        } else {
+                            0.0
+                        }
+                    if (after + tail < before - 1e-9) {
+                        tour.subList(i, j + 1).reverse()
+                        improved = true
+                    }
+                }
+            }
+            if (!improved) return tour
+        }
+        return tour
+    }
+}
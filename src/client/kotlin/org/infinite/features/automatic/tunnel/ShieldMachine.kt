@@ -11,6 +11,7 @@ import net.minecraft.util.math.Vec3d
 import org.infinite.ConfigurableFeature
 import org.infinite.InfiniteClient
 import org.infinite.features.movement.braek.FastBreak
+import org.infinite.features.utils.tool.AutoTool
 import org.infinite.libs.ai.AiInterface
 import org.infinite.libs.ai.actions.movement.LinearMovementAction
 import org.infinite.libs.client.inventory.InventoryManager
@@ -294,6 +295,7 @@ class ShieldMachine : ConfigurableFeature() {
 
         val currentDirection = direction ?: return
         val preMineList = LinkedHashSet<BlockPos>()
+        val autoTool = InfiniteClient.getFeature(AutoTool::class.java)
         val width = tunnelWidth.value
         val height = tunnelHeight.value
         val forwardOffset = tunnelOffset.value
@@ -345,6 +347,12 @@ class ShieldMachine : ConfigurableFeature() {
                             handleLiquidEncounter(targetPos)
                             return
                         }
+                        if (autoTool?.toolFor(state)?.breakingTicks?.isInfinite() == true) {
+                            // 破壊できないブロック (岩盤など) がある場合は、掘り進めないため停止
+                            InfiniteClient.error("[ShieldMachine] Unbreakable block at ${targetPos.toShortString()}")
+                            disable()
+                            return
+                        }
                         preMineList.add(targetPos)
                     }
                 }
@@ -1,12 +1,12 @@
 package org.infinite.features.automatic.wood
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
 import net.minecraft.block.Block
-import net.minecraft.block.BlockState
 import net.minecraft.block.Blocks
 import net.minecraft.registry.Registries
+import net.minecraft.util.math.BlockBox
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.Vec3d
-import net.minecraft.util.math.Vec3i
 import org.infinite.ConfigurableFeature
 import org.infinite.InfiniteClient
 import org.infinite.libs.ai.AiInterface
@@ -14,7 +14,10 @@ import org.infinite.libs.ai.actions.block.MineBlockAction
 import org.infinite.libs.ai.actions.movement.LinearMovementAction
 import org.infinite.libs.ai.actions.movement.PathMovementAction
 import org.infinite.libs.ai.interfaces.AiAction.AiActionState
+import org.infinite.libs.world.WorldSnapshot
 import org.infinite.settings.FeatureSetting
+import org.infinite.utils.block.FloodFill
+import java.util.concurrent.CompletableFuture
 
 class WoodMiner : ConfigurableFeature() {
     val searchRadius =
@@ -39,29 +42,27 @@ class WoodMiner : ConfigurableFeature() {
 
     override fun start() = disable()
 
-    private fun isLogBlock(blockState: BlockState): Boolean = isLogBlock(blockState.block)
-
-    private fun isLogBlock(block: Block): Boolean {
-        val logList =
-            listOf(
-                Blocks.OAK_LOG,
-                Blocks.BIRCH_LOG,
-                Blocks.ACACIA_LOG,
-                Blocks.CHERRY_LOG,
-                Blocks.JUNGLE_LOG,
-                Blocks.PALE_OAK_LOG,
-                Blocks.DARK_OAK_LOG,
-                Blocks.MANGROVE_LOG,
-                Blocks.SPRUCE_LOG,
-            )
-        // MANGROVE_LOGが重複していたため一つ削除
-        return logList.contains(block) || isCustomLogBlock(block)
-    }
+    // 探索中に何度も調べるため、集合は一度だけ生成する
+    private val logTypes =
+        setOf(
+            Blocks.OAK_LOG,
+            Blocks.BIRCH_LOG,
+            Blocks.ACACIA_LOG,
+            Blocks.CHERRY_LOG,
+            Blocks.JUNGLE_LOG,
+            Blocks.PALE_OAK_LOG,
+            Blocks.DARK_OAK_LOG,
+            Blocks.MANGROVE_LOG,
+            Blocks.SPRUCE_LOG,
+        )
 
-    private fun isCustomLogBlock(block: Block): Boolean {
-        val blockId = Registries.BLOCK.getId(block).toString()
-        return woodTypes.value.contains(blockId)
-    }
+    /**
+     * @param customLogs WoodTypes の設定値。ワーカースレッドから呼び出されるため、呼び出し側で複製したものを渡す
+     */
+    private fun isLogBlock(
+        block: Block,
+        customLogs: Set<String>,
+    ): Boolean = block in logTypes || Registries.BLOCK.getId(block).toString() in customLogs
 
     data class Tree(
         val rootPos: BlockPos,
@@ -96,35 +97,32 @@ class WoodMiner : ConfigurableFeature() {
 
     var state: State = State.Idle()
 
-    // searchTreesのコードは変更なし
-    private fun searchTrees(): List<Tree> {
-        // ... (省略: searchTreesの元のコード)
-        val playerPos = player?.blockPos ?: return emptyList()
-        val r = searchRadius.value
-        val h = searchHeight.value
+    // ワーカースレッドから呼び出されるため、スナップショットと引数以外の状態には触れない
+    private fun searchTrees(
+        snapshot: WorldSnapshot,
+        playerPos: BlockPos,
+        r: Int,
+        h: Int,
+        customLogs: Set<String>,
+    ): List<Tree> {
         val trees = mutableListOf<Tree>()
-        val searchedPositions = mutableSetOf<BlockPos>() // 既に探索したブロックを記憶
+        val searchedPositions = LongOpenHashSet() // 既に探索したブロックを記憶
 
         // 探索範囲: XとZはプレイヤーを中心に ±r、Yはプレイヤーを中心に -1 (下) から +h (上)
         for (x in (playerPos.x - r)..(playerPos.x + r)) {
             for (z in (playerPos.z - r)..(playerPos.z + r)) {
                 for (y in (playerPos.y - 1)..(playerPos.y + h)) {
-                    val currentPos = BlockPos(x, y, z)
-
                     // 既に探索済みの位置はスキップ
-                    if (searchedPositions.contains(currentPos)) continue
+                    if (BlockPos.asLong(x, y, z) in searchedPositions) continue
 
-                    val blockState = world!!.getBlockState(currentPos)
-                    if (isLogBlock(blockState)) {
-                        // 丸太ブロックを見つけたら、その木の全体を探索
-                        val logType = blockState.block
-                        val woodDetails = searchTreeFromRoot(currentPos, logType)
+                    val block = snapshot.getBlockState(x, y, z).block
+                    if (isLogBlock(block, customLogs)) {
+                        // 丸太ブロックを見つけたら、その木の全体を探索 (探索済みの丸太はsearchedPositionsに追加される)
+                        val woodDetails = searchTreeFromRoot(snapshot, BlockPos(x, y, z), block, searchedPositions)
 
                         // 見つかった丸太の根元の位置と総数を記録
                         if (woodDetails.count > 0) {
                             trees.add(woodDetails)
-                            // 探索済みの丸太ブロックの位置をSetに追加
-                            searchedPositions.addAll(woodDetails.logBlocks)
                         }
                     }
                 }
@@ -133,59 +131,48 @@ class WoodMiner : ConfigurableFeature() {
         return trees.sortedBy { it.rootPos.getSquaredDistance(playerPos) }
     }
 
-    // searchTreeFromRootのコードは変更なし
     private fun searchTreeFromRoot(
+        snapshot: WorldSnapshot,
         startPos: BlockPos,
         logType: Block,
+        searchedPositions: LongOpenHashSet,
     ): Tree {
-        // ... (省略: searchTreeFromRootの元のコード)
         var rootPos = startPos
-        var count = 0
-        val queue = ArrayDeque<BlockPos>()
-        val visitedLogBlocks = mutableSetOf<BlockPos>() // 探索済みの丸太ブロックの位置を保持
-        queue.add(startPos)
-        visitedLogBlocks.add(startPos)
-
-        // BFS (幅優先探索) で繋がっている丸太をすべてカウント
-        while (queue.isNotEmpty()) {
-            val currentPos = queue.removeFirst()
-            count++
-
-            // 最も低い丸太の位置を更新
-            if (currentPos.y < rootPos.y) {
-                rootPos = currentPos
-            }
-
-            // 上下左右前後の6方向をチェック
-            for (offset in listOf(
-                Vec3i(0, 1, 0),
-                Vec3i(0, -1, 0),
-                Vec3i(1, 0, 0),
-                Vec3i(-1, 0, 0),
-                Vec3i(0, 0, 1),
-                Vec3i(0, 0, -1),
-            )) {
-                val nextPos = currentPos.add(offset)
-                if (!visitedLogBlocks.contains(nextPos)) {
-                    val block = world!!.getBlockState(nextPos).block
-                    // 同じ種類の丸太ブロックであるかを確認
-                    if (block == logType) {
-                        visitedLogBlocks.add(nextPos)
-                        queue.add(nextPos)
+        val logBlocks = mutableSetOf<BlockPos>() // 探索済みの丸太ブロックの位置を保持
+
+        // BFS (幅優先探索) で繋がっている同じ種類の丸太をすべて集める
+        val count =
+            FloodFill().run(
+                startPos,
+                searchedPositions,
+                onAccept = { pos ->
+                    logBlocks.add(pos.toImmutable())
+                    // 最も低い丸太の位置を更新
+                    if (pos.y < rootPos.y) {
+                        rootPos = pos.toImmutable()
                     }
-                }
-            }
-        }
-        return Tree(rootPos, count, logType, visitedLogBlocks)
+                },
+            ) { snapshot.getBlockState(it).block == logType }
+        return Tree(rootPos, count, logType, logBlocks)
     }
 
     var trees: List<Tree> = emptyList()
     var currentTree: Tree? = null
 
+    // 実行中の木の探索
+    private var treeSearch: CompletableFuture<*>? = null
+
     override fun enabled() {
         state = State.Idle()
         trees = emptyList()
         currentTree = null
+        treeSearch?.cancel(false)
+        treeSearch = null
+    }
+
+    override fun disabled() {
+        treeSearch?.cancel(false)
+        treeSearch = null
     }
 
     override fun tick() {
@@ -210,12 +197,44 @@ class WoodMiner : ConfigurableFeature() {
     }
 
     private fun handleIdle() {
-        trees = searchTrees()
-        if (trees.isEmpty()) {
-            randomWalk()
-        } else {
-            currentTree = trees.first()
-            state = State.Goto(currentTree!!.rootPos)
+        if (treeSearch != null) return // 探索結果を待つ
+        val playerPos = player?.blockPos ?: return
+        val currentWorld = world ?: return
+        val r = searchRadius.value
+        val h = searchHeight.value
+        val customLogs = woodTypes.value.toSet()
+        // 探索範囲の外まで伸びる木も辿れるよう、スナップショットは余裕を持たせて取る
+        val bounds =
+            BlockBox(
+                playerPos.x - r - TREE_MARGIN,
+                playerPos.y - 1 - TREE_MARGIN,
+                playerPos.z - r - TREE_MARGIN,
+                playerPos.x + r + TREE_MARGIN,
+                playerPos.y + h + TREE_MARGIN,
+                playerPos.z + r + TREE_MARGIN,
+            )
+        val search =
+            WorldSnapshot.supply(currentWorld, bounds) { snapshot -> searchTrees(snapshot, playerPos, r, h, customLogs) }
+        treeSearch = search
+        search.whenComplete { result, error ->
+            // 無効化などでキャンセルされた探索や、新しい探索に置き換えられた探索の結果は反映しない
+            if (treeSearch !== search) return@whenComplete
+            // 失敗した場合も探索中の状態を解除する。同じ失敗を毎ティック繰り返さないよう、機能は停止する
+            treeSearch = null
+            if (error != null) {
+                InfiniteClient.error("[WoodMiner] Tree search failed: ${error.message}")
+                error.printStackTrace()
+                disable()
+                return@whenComplete
+            }
+            if (!isEnabled() || state !is State.Idle) return@whenComplete
+            trees = result
+            if (trees.isEmpty()) {
+                randomWalk()
+            } else {
+                currentTree = trees.first()
+                state = State.Goto(currentTree!!.rootPos)
+            }
         }
     }
 
@@ -299,4 +318,8 @@ class WoodMiner : ConfigurableFeature() {
             )
         }
     }
+
+    companion object {
+        private const val TREE_MARGIN = 16
+    }
 }
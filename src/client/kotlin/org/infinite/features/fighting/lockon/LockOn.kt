@@ -15,6 +15,7 @@ import org.infinite.libs.client.aim.task.config.AimPriority
 import org.infinite.libs.client.aim.task.config.AimTarget
 import org.infinite.libs.graphics.Graphics2D
 import org.infinite.libs.graphics.Graphics3D
+import org.infinite.libs.graphics.ScreenProjection
 import org.infinite.settings.FeatureSetting
 import org.infinite.settings.Property
 import org.infinite.utils.rendering.getRainbowColor
@@ -75,17 +76,18 @@ class LockOn : ConfigurableFeature(initialEnabled = false) {
 
     var lockedEntity: LivingEntity? = null
 
-    // 🎯 座標変換の結果を格納するプライベートフィールド
-    private var screenPos: Graphics2D.DisplayPos? = null
+    // 🎯 座標変換の結果を格納するプライベートフィールド (ScreenProjectionで投影し、フレーム間で再利用する)
+    private val screenPos = FloatArray(2)
+    private var isScreenPosVisible = false
 
     override fun enabled() {
         findAndLockTarget()
-        screenPos = null // 有効化時にクリア
+        isScreenPosVisible = false // 有効化時にクリア
     }
 
     override fun disabled() {
         lockedEntity = null
-        screenPos = null // 無効化時にクリア
+        isScreenPosVisible = false // 無効化時にクリア
     }
 
     fun exec() {
@@ -158,10 +160,10 @@ class LockOn : ConfigurableFeature(initialEnabled = false) {
     // ----------------------------------------------------------------------
     override fun render2d(graphics2D: Graphics2D) {
         // 3Dレンダリングで計算され、格納された画面座標を利用
-        val pos = screenPos ?: return
+        if (!isScreenPosVisible) return
 
-        val x = pos.x
-        val y = pos.y
+        val x = screenPos[0].toDouble()
+        val y = screenPos[1].toDouble()
         val rainbowColor = getRainbowColor()
         val boxSize = 8
         graphics2D.drawBorder(
@@ -195,20 +197,20 @@ class LockOn : ConfigurableFeature(initialEnabled = false) {
     override fun render3d(graphics3D: Graphics3D) {
         val target = lockedEntity
         if (target == null) {
-            screenPos = null // ターゲットがいない場合はクリア
+            isScreenPosVisible = false // ターゲットがいない場合はクリア
             return
         }
 
         // 1. 座標変換を実行し、プライベートフィールドに格納
         // ターゲットの目の高さの中央をターゲット座標とする
         val targetPos = target.eyePos
-        screenPos = graphics3D.toDisplayPos(targetPos)
+        isScreenPosVisible = ScreenProjection.project(targetPos.x, targetPos.y, targetPos.z, screenPos, 0)
 
-        // 画面外の場合は、screenPos が null になり、2D 描画はスキップされる
+        // 画面外の場合は、isScreenPosVisible が false になり、2D 描画はスキップされる
 
         // 2. 3D ボックスの描画 (オプション)
-        // ターゲットが画面に表示されているか (screenPos != null) にかかわらず、3D描画は実行可能
-        if (screenPos != null) {
+        // ターゲットが画面に表示されているか (isScreenPosVisible) にかかわらず、3D描画は実行可能
+        if (isScreenPosVisible) {
             // ターゲットのヒットボックスを取得
             val box = target.boundingBox
 
@@ -0,0 +1,232 @@
+package org.infinite.features.movement.braek
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
+import net.minecraft.block.BlockState
+import net.minecraft.network.packet.c2s.play.PlayerActionC2SPacket
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Direction
+import net.minecraft.world.World
+import org.infinite.InfiniteClient
+import org.infinite.features.utils.tool.AutoTool
+import org.infinite.libs.client.player.ClientInterface
+import org.infinite.utils.block.BlockUtils
+
+/**
+ * 複数のブロックの破壊をまとめて進める、破壊パケットのスケジューラ。VeinBreakとLinearBreakが使います。
+ *
+ * バニラのサーバーはプレイヤーごとに「破壊中のブロック」と「破壊の完了を待つブロック」を1つずつ保持します。
+ * 後者は、破壊の停止 (STOP_DESTROY_BLOCK) が早すぎたブロックで、サーバー側で必要な時間が経つと破壊されます。
+ * これを利用して、時間のかかるブロックは2つを並行して進め、一撃で壊れるブロックは同じティックにまとめて破壊します。
+ *
+ * 破壊の開始 (START_DESTROY_BLOCK) はサーバー側の破壊開始時刻を上書きするため、破壊中のブロックがある間は新しい破壊を始めません。
+ * 破壊の完了はクライアント側のワールドでブロックが消えたことで確認し、確認できないまま時間が経ったブロックは改めて破壊を試みます。
+ *
+ * 破壊の進行度は、サーバーと同じく毎ティック、その時点で持っているアイテムでの [BlockState.calcBlockBreakingDelta] を足して求めます。
+ * そのため、破壊の開始後にAutoToolがツールを持ち替えた場合も、持ち替えた後の速度で進行度が進みます。
+ */
+class BreakScheduler : ClientInterface() {
+    private class Target(
+        val pos: BlockPos,
+        val side: Direction,
+        // 今持っているアイテムで、破壊に必要なティック数 (FastBreakの判定に使う)
+        var breakingTicks: Float,
+    ) {
+        // サーバーは開始したティックも1ティックとして数えるため、開始時の1ティック分から始める
+        var progress = 1f / breakingTicks
+
+        // 進行度が 1 に達したティック (未達の場合は -1)
+        var completedTick = -1
+    }
+
+    private var tickCounter = 0
+
+    // サーバーが破壊中のブロック (破壊の停止を送るまで)
+    private var active: Target? = null
+
+    // 破壊の停止を早めに送り、サーバー側での破壊の完了を待っているブロック
+    private var delayed: Target? = null
+
+    // パケットを送り終え、クライアント側で消えるのを待っているブロック (BlockPos.asLong -> 送信したティック)
+    private val awaiting = Long2IntOpenHashMap()
+
+    // 最後に破壊を開始したブロック
+    private var lastStartedPos: BlockPos? = null
+
+    /**
+     * 現在破壊しているブロック。AutoToolがツールを選ぶ対象になります。
+     */
+    val currentPos: BlockPos?
+        get() = active?.pos ?: delayed?.pos ?: lastStartedPos
+
+    /**
+     * 破壊中、または破壊の完了を待っているブロックがある場合に true を返します。
+     */
+    val isBreaking: Boolean
+        get() = active != null || delayed != null || !awaiting.isEmpty()
+
+    /**
+     * 1ティック分の破壊を進めます。
+     * 破壊し終えたブロック、空気になったブロック、範囲外や破壊できないブロックは [targets] から取り除きます。
+     *
+     * @param targets 破壊対象のブロック。先頭から順に破壊する
+     * @param range 破壊できる距離
+     * @param packetsPerTick 1ティックに送るブロック操作のパケット (PlayerActionC2SPacket) の上限。
+     *   破壊面への向きは [BlockUtils.faceVectorPacket] でサーバー向けの回転として記録するだけで、パケットは数えない
+     */
+    fun tick(
+        targets: MutableCollection<BlockPos>,
+        range: Double,
+        packetsPerTick: Int,
+    ) {
+        val world = world ?: return
+        val interactionManager = interactionManager ?: return
+        tickCounter++
+        var budget = packetsPerTick
+        delayed?.let { advance(world, it) }
+        active?.let { advance(world, it) }
+
+        // 1. 完了の確認
+        val awaitingIterator = awaiting.long2IntEntrySet().iterator()
+        while (awaitingIterator.hasNext()) {
+            val entry = awaitingIterator.next()
+            val pos = BlockPos.fromLong(entry.longKey)
+            if (isBroken(world, pos)) {
+                targets.remove(pos)
+                awaitingIterator.remove()
+            } else if (tickCounter - entry.intValue > CONFIRM_TIMEOUT_TICKS) {
+                // サーバーに拒否された: 破壊対象に残っていれば、改めて破壊を試みる
+                awaitingIterator.remove()
+            }
+        }
+        delayed?.let { target ->
+            if (isBroken(world, target.pos)) {
+                targets.remove(target.pos)
+                delayed = null
+            } else if (target.completedTick >= 0 && tickCounter - target.completedTick > CONFIRM_TIMEOUT_TICKS) {
+                delayed = null
+            } else if (target.breakingTicks.isInfinite()) {
+                // 今のツールでは壊せない (持ち替えた場合など)。サーバーでも破壊が進まないため、待つのをやめる
+                delayed = null
+            }
+        }
+        active?.let { target ->
+            val progress = target.progress
+            val fastBreak = InfiniteClient.getFeature(FastBreak::class.java)
+            when {
+                isBroken(world, target.pos) -> {
+                    targets.remove(target.pos)
+                    active = null
+                }
+
+                target.pos !in targets -> {
+                    // 範囲外に出たなどの理由で破壊対象から外れた
+                    send(PlayerActionC2SPacket.Action.ABORT_DESTROY_BLOCK, target.pos, target.side)
+                    budget--
+                    active = null
+                }
+
+                progress >= 1f || fastBreak?.canForceFinish(progress, target.breakingTicks) == true -> {
+                    send(PlayerActionC2SPacket.Action.STOP_DESTROY_BLOCK, target.pos, target.side)
+                    budget--
+                    awaiting.put(target.pos.asLong(), tickCounter)
+                    active = null
+                }
+            }
+        }
+        if (active != null || budget <= 0) return
+
+        // 2. 新しい破壊の開始
+        if (interactionManager.isBreakingBlock) interactionManager.cancelBlockBreaking()
+        val autoTool = InfiniteClient.getFeature(AutoTool::class.java)
+        val rangeSq = range * range
+        val iterator = targets.iterator()
+        while (budget > 0 && iterator.hasNext()) {
+            val pos = iterator.next()
+            if (awaiting.containsKey(pos.asLong()) || pos == delayed?.pos) continue
+            val state = world.getBlockState(pos)
+            // 空気・置換可能なブロックと、破壊できないブロック (岩盤など) は破壊対象から外す
+            if (state.isAir || state.isReplaceable || autoTool?.toolFor(state)?.breakingTicks?.isInfinite() == true) {
+                iterator.remove()
+                continue
+            }
+            val params = BlockUtils.getBlockBreakingParams(pos)
+            if (params == null || params.distanceSq > rangeSq || params.breakingTicks.isInfinite()) {
+                iterator.remove()
+                continue
+            }
+            BlockUtils.faceVectorPacket(params.hitVec)
+            send(PlayerActionC2SPacket.Action.START_DESTROY_BLOCK, params.pos, params.side)
+            budget--
+            lastStartedPos = params.pos
+            if (params.breakingTicks <= 1f) {
+                // 一撃で壊れるブロックは、開始のパケットだけで破壊される
+                awaiting.put(pos.asLong(), tickCounter)
+                continue
+            }
+            val target = Target(params.pos, params.side, params.breakingTicks)
+            if (delayed == null && budget > 0) {
+                // すぐに破壊を停止し、残りの破壊をサーバーに任せる
+                send(PlayerActionC2SPacket.Action.STOP_DESTROY_BLOCK, params.pos, params.side)
+                budget--
+                delayed = target
+                continue
+            }
+            active = target
+            return
+        }
+    }
+
+    /**
+     * 破壊中のブロックと、その進行度 (0.0 から 1.0) を順に渡します。
+     */
+    fun forEachBreaking(action: (BlockPos, Float) -> Unit) {
+        delayed?.let { action(it.pos, it.progress) }
+        active?.let { action(it.pos, it.progress) }
+    }
+
+    // 現在持っているアイテムで、1ティック分の破壊の進行度を足す
+    private fun advance(
+        world: World,
+        target: Target,
+    ) {
+        val player = player ?: return
+        val delta = world.getBlockState(target.pos).calcBlockBreakingDelta(player, world, target.pos)
+        target.breakingTicks = if (delta > 0f) 1f / delta else Float.POSITIVE_INFINITY
+        if (target.completedTick >= 0) return
+        target.progress = (target.progress + delta).coerceAtMost(1f)
+        if (target.progress >= 1f) target.completedTick = tickCounter
+    }
+
+    /**
+     * 破壊を中止し、状態をリセットします。
+     * 破壊の完了を待っているブロックは、サーバー側で破壊される場合があります。
+     */
+    fun cancel() {
+        active?.let { send(PlayerActionC2SPacket.Action.ABORT_DESTROY_BLOCK, it.pos, it.side) }
+        active = null
+        delayed = null
+        awaiting.clear()
+        lastStartedPos = null
+    }
+
+    private fun isBroken(
+        world: World,
+        pos: BlockPos,
+    ): Boolean {
+        val state = world.getBlockState(pos)
+        return state.isAir || state.isReplaceable
+    }
+
+    private fun send(
+        action: PlayerActionC2SPacket.Action,
+        pos: BlockPos,
+        side: Direction,
+    ) {
+        networkHandler?.sendPacket(PlayerActionC2SPacket(action, pos, side))
+    }
+
+    companion object {
+        // パケットを送ってから、ブロックが消えるのを待つティック数
+        private const val CONFIRM_TIMEOUT_TICKS = 20
+    }
+}
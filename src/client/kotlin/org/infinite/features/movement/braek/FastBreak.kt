@@ -26,6 +26,20 @@ class FastBreak : ConfigurableFeature(initialEnabled = false) {
         manager.setBlockBreakingCooldown(interval.value)
     }
 
+    /**
+     * 進行度が [progress] で、破壊に [breakingTicks] ティックかかるブロックを、強制破壊してよい場合に true を返します。
+     * [BreakScheduler] が破壊の停止を早めに送るかどうかの判定に使います。
+     */
+    fun canForceFinish(
+        progress: Float,
+        breakingTicks: Float,
+    ): Boolean {
+        if (!isEnabled() || safeMode.value) return false
+        val remainProgress = 1 - progress
+        val remainTick = breakingTicks * remainProgress
+        return remainTick < thresholdTick.value && remainProgress < thresholdPercentage.value / 100.0
+    }
+
     fun handle(blockPos: BlockPos) {
         val interactionManager = interactionManager ?: return
         val params = BlockUtils.getBlockBreakingParams(blockPos) ?: return // 破壊パラメータが取得できない場合は中止
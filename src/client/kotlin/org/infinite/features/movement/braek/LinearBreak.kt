@@ -3,13 +3,11 @@ package org.infinite.features.movement.braek
 import net.minecraft.util.Hand
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.Box
-import net.minecraft.util.math.Direction
 import org.infinite.ConfigurableFeature
 import org.infinite.InfiniteClient
 import org.infinite.libs.graphics.Graphics3D
 import org.infinite.libs.graphics.render.RenderUtils
 import org.infinite.settings.FeatureSetting
-import org.infinite.utils.block.BlockUtils
 
 class LinearBreak : ConfigurableFeature() {
     override val level: FeatureLevel = FeatureLevel.Cheat
@@ -29,6 +27,13 @@ class LinearBreak : ConfigurableFeature() {
             min = 1.0,
             max = 500.0,
         )
+    private val packetsPerTick =
+        FeatureSetting.IntSetting(
+            name = "PacketsPerTick",
+            defaultValue = 8,
+            min = 1,
+            max = 32,
+        )
     private val swingHand =
         FeatureSetting.BooleanSetting(
             name = "SwingHand",
@@ -43,17 +48,17 @@ class LinearBreak : ConfigurableFeature() {
         )
 
     override val settings: List<FeatureSetting<*>> =
-        listOf(breakRange, maxBlocks, swingHand, ignoreHotbarChange) // 設定に追加
+        listOf(breakRange, maxBlocks, packetsPerTick, swingHand, ignoreHotbarChange) // 設定に追加
 
     // 破壊対象のブロックリスト（LinkedHashSetで処理順を維持）
     private val blocksToMine = LinkedHashSet<BlockPos>()
 
-    // 現在破壊中のブロックの位置と、そのブロックを叩いている面を保持
-    var currentBreakingPos: BlockPos? = null
-    private var currentBreakingSide: Direction? = null
+    // 複数のブロックの破壊をまとめて進める
+    private val scheduler = BreakScheduler()
 
-    // 破壊進行度 (0.0 から 1.0) を保持
-    private var currentBreakingProgress: Float = 0.0f
+    // 現在破壊中のブロックの位置
+    val currentBreakingPos: BlockPos?
+        get() = scheduler.currentPos
 
     // 破壊開始時のホットバーのスロットを保持
     private var startHotbarSlot: Int = -1
@@ -77,108 +82,46 @@ class LinearBreak : ConfigurableFeature() {
 
     /**
      * 破壊リスト内のブロックをサーバーに破壊させる。
+     * 破壊は [BreakScheduler] が、1ティックに送るパケットの数を [packetsPerTick] 以下に抑えながらまとめて進める。
      */
     private fun mine() {
-        val interactionManager = client.interactionManager ?: return
         val player = player ?: return
 
         // 修正点: 設定が無効な場合のみ、ホットバー切り替え時のキャンセルチェックを行う
         if (!ignoreHotbarChange.value) {
-            if (currentBreakingPos != null && startHotbarSlot != -1 && player.inventory.selectedSlot != startHotbarSlot) {
+            if (scheduler.isBreaking && startHotbarSlot != -1 && player.inventory.selectedSlot != startHotbarSlot) {
                 if (autoToolCallBack == player.inventory.selectedSlot) {
                     startHotbarSlot = autoToolCallBack
                 } else {
                     // ホットバーが切り替わった場合、破壊をキャンセルしリストから削除
-                    interactionManager.cancelBlockBreaking()
-                    blocksToMine.remove(currentBreakingPos)
-                    // 状態をリセット
-                    currentBreakingPos = null
-                    currentBreakingSide = null
-                    currentBreakingProgress = 0.0f
+                    currentBreakingPos?.let { blocksToMine.remove(it) }
+                    scheduler.cancel()
                     startHotbarSlot = -1
                     return
                 }
             }
-            // ----------------------------------------------------
         }
 
         // 1. 破壊対象のブロックがない場合、現在の破壊を中止
         if (blocksToMine.isEmpty()) {
-            if (currentBreakingPos != null) {
-                interactionManager.cancelBlockBreaking()
-                currentBreakingPos = null
-                currentBreakingSide = null
-                currentBreakingProgress = 0.0f
-            }
-            return
-        }
-
-        // 2. ターゲットの決定とブロック状態のチェック
-        val targetPos = blocksToMine.first()
-        val blockState = client.world?.getBlockState(targetPos)
-
-        // ターゲットブロックが空気または置換可能なら、破壊リストから削除
-        if (blockState?.isAir == true || blockState?.isReplaceable == true) {
-            blocksToMine.remove(targetPos)
-            currentBreakingPos = null
-            currentBreakingProgress = 0.0f
-            return
-        }
-
-        // 3. 破壊パラメータの取得と有効性のチェック
-        val params = BlockUtils.getBlockBreakingParams(targetPos)
-
-        // パラメータが取得できない、または距離が離れすぎた場合
-        if (params == null || params.distanceSq > breakRange.value * breakRange.value) {
-            blocksToMine.remove(targetPos)
-            currentBreakingPos = null
-            currentBreakingProgress = 0.0f
+            if (scheduler.isBreaking) scheduler.cancel()
+            startHotbarSlot = -1
             return
         }
 
-        // 4. 破壊開始またはターゲット変更
-        if (currentBreakingPos == null || currentBreakingPos != params.pos) {
-            // 前の破壊を中止
-            interactionManager.cancelBlockBreaking()
+        // 2. 破壊を進める (破壊し終えたブロックや範囲外のブロックはリストから削除される)
+        scheduler.tick(blocksToMine, breakRange.value, packetsPerTick.value)
 
-            // サーバーに視点変更パケットを送信
-            BlockUtils.faceVectorPacket(params.hitVec)
-
-            // 破壊開始
-            interactionManager.updateBlockBreakingProgress(params.pos, params.side)
-
-            // 状態の更新
-            currentBreakingPos = params.pos
-            currentBreakingSide = params.side
-            currentBreakingProgress = 0.0f // 新しいブロックなので0から開始
-
-            // IgnoreHotbarChangeが有効でない場合にのみスロットを保存
-            startHotbarSlot =
-                if (!ignoreHotbarChange.value) {
-                    player.inventory.selectedSlot // ホットバーの状態を保存
-                } else {
-                    -1 // 無視する場合は状態を保存しない
-                }
-        } else {
-            // 5. 進行中: 進行パケットを送信し、進行度を更新
-            val pos = currentBreakingPos!!
-            val side = currentBreakingSide!!
-            interactionManager.updateBlockBreakingProgress(pos, side)
-            currentBreakingProgress = interactionManager.currentBreakingProgress
-
-            val fastBreak = InfiniteClient.getFeature(FastBreak::class.java) ?: return
-            if (fastBreak.isEnabled() && !fastBreak.safeMode.value) {
-                fastBreak.handle(pos)
+        // 3. IgnoreHotbarChangeが有効でない場合にのみ、破壊開始時のスロットを保存
+        startHotbarSlot =
+            when {
+                !scheduler.isBreaking || ignoreHotbarChange.value -> -1
+                startHotbarSlot == -1 -> player.inventory.selectedSlot
+                else -> startHotbarSlot
             }
-            // 破壊が完了したと見なせる場合（次のtickでブロックが消えるはずだが、念のため）
-            if (currentBreakingProgress >= 1.0f) {
-                currentBreakingPos = null
-                currentBreakingProgress = 0.0f
-            }
-        }
 
-        // 6. 手を振る
-        if (swingHand.value) {
+        // 4. 手を振る
+        if (swingHand.value && scheduler.isBreaking) {
             player.swingHand(Hand.MAIN_HAND)
         }
     }
@@ -195,10 +138,9 @@ class LinearBreak : ConfigurableFeature() {
         graphics3D.renderLinedColorBoxes(boxes, true)
 
         // 破壊中のブロックに進行度に応じたハイライトを追加
-        currentBreakingPos?.let { pos ->
-            val progress = currentBreakingProgress.coerceIn(0.0f, 1.0f)
-            val scale = progress // 0.0fから1.0fまでスケール
-            val offset = (1.0 - scale) * 0.5 // ブロックの中心から外側へ拡大するためのオフセット
+        val progressBoxes = ArrayList<RenderUtils.ColorBox>(2)
+        scheduler.forEachBreaking { pos, progress ->
+            val offset = (1.0 - progress) * 0.5 // ブロックの中心から外側へ拡大するためのオフセット
             val minX = pos.x + offset
             val minY = pos.y + offset
             val minZ = pos.z + offset
@@ -208,13 +150,18 @@ class LinearBreak : ConfigurableFeature() {
 
             // 進行度に応じて縮小/拡大するボックス
             val dynamicBox = Box(minX, minY, minZ, maxX, maxY, maxZ).contract(0.005)
-
-            val boxes = listOf(RenderUtils.ColorBox(color, dynamicBox))
-            graphics3D.renderSolidColorBoxes(boxes, true)
+            progressBoxes.add(RenderUtils.ColorBox(color, dynamicBox))
         }
+        graphics3D.renderSolidColorBoxes(progressBoxes, true)
     }
 
     val isWorking: Boolean
         get() = isEnabled() && !blocksToMine.isEmpty()
     var autoToolCallBack: Int = -1
+
+    override fun disabled() {
+        blocksToMine.clear()
+        scheduler.cancel()
+        startHotbarSlot = -1
+    }
 }
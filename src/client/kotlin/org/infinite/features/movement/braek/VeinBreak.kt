@@ -3,17 +3,16 @@ package org.infinite.features.movement.braek
 import net.minecraft.block.Block
 import net.minecraft.registry.Registries
 import net.minecraft.util.Hand
+import net.minecraft.util.math.BlockBox
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.Box
-import net.minecraft.util.math.Direction
 import org.infinite.ConfigurableFeature
 import org.infinite.InfiniteClient
 import org.infinite.libs.graphics.Graphics3D
 import org.infinite.libs.graphics.render.RenderUtils
 import org.infinite.settings.FeatureSetting
-import org.infinite.utils.block.BlockUtils
-import java.util.LinkedList
-import java.util.Queue
+import org.infinite.utils.block.FloodFill
+import kotlin.math.ceil
 
 /**
  * 破壊対象のブロックから周囲の同じ種類の鉱石を探索し、一括で破壊する機能。
@@ -64,6 +63,13 @@ class VeinBreak : ConfigurableFeature() {
             min = 1.0,
             max = 500.0,
         )
+    private val packetsPerTick =
+        FeatureSetting.IntSetting(
+            name = "PacketsPerTick",
+            defaultValue = 8,
+            min = 1,
+            max = 32,
+        )
     private val swingHand =
         FeatureSetting.BooleanSetting(
             name = "SwingHand",
@@ -77,17 +83,17 @@ class VeinBreak : ConfigurableFeature() {
         )
 
     override val settings: List<FeatureSetting<*>> =
-        listOf(breakRange, maxBlocks, swingHand, ignoreHotbarChange, blockList)
+        listOf(breakRange, maxBlocks, packetsPerTick, swingHand, ignoreHotbarChange, blockList)
 
     // 破壊対象のブロックリスト（LinkedHashSetで処理順を維持）
     private val blocksToMine = LinkedHashSet<BlockPos>()
 
-    // 現在破壊中のブロックの位置と、そのブロックを叩いている面を保持
-    var currentBreakingPos: BlockPos? = null
-    private var currentBreakingSide: Direction? = null
+    // 複数のブロックの破壊をまとめて進める
+    private val scheduler = BreakScheduler()
 
-    // 破壊進行度 (0.0 から 1.0) を保持
-    private var currentBreakingProgress: Float = 0.0f
+    // 現在破壊中のブロックの位置
+    val currentBreakingPos: BlockPos?
+        get() = scheduler.currentPos
 
     // 破壊開始時のホットバーのスロットを保持
     private var startHotbarSlot: Int = -1
@@ -110,7 +116,7 @@ class VeinBreak : ConfigurableFeature() {
      * リストが空の場合、このブロックを起点に鉱脈探索を開始する。
      */
     fun add(pos: BlockPos) {
-        if (blocksToMine.isEmpty() || currentBreakingPos == null) { // 最初のブロックが追加されたとき、または破壊が完了したときに鉱脈を探索
+        if (blocksToMine.isEmpty() || !scheduler.isBreaking) { // 最初のブロックが追加されたとき、または破壊が完了したときに鉱脈を探索
             findVein(pos)
         }
     }
@@ -131,158 +137,66 @@ class VeinBreak : ConfigurableFeature() {
     private fun findVein(startPos: BlockPos) {
         blocksToMine.clear()
         val world = client.world ?: return
-        val queue: Queue<BlockPos> = LinkedList()
-        val visited = mutableSetOf<BlockPos>()
         if (!isOreBlock(world.getBlockState(startPos).block)) {
             return
         }
 
-        queue.offer(startPos)
-        visited.add(startPos)
-
-        val rangeSq = breakRange.value * breakRange.value
-
-        while (queue.isNotEmpty() && blocksToMine.size < maxBlocks.value.toInt()) {
-            val currentPos = queue.poll()
-
-            // 破壊範囲のチェック（distanceSq < rangeSq で、プレイヤーからではなくstartPosからの距離で判定）
-            if (currentPos.getSquaredDistance(startPos) > rangeSq) {
-                continue // 範囲外のブロックはスキップ
-            }
-
-            val blockState = world.getBlockState(currentPos)
-            val block = blockState.block
-
-            if (isOreBlock(block)) {
-                blocksToMine.add(currentPos)
-
-                // 隣接ブロックを探索キューに追加
-                for (direction in Direction.entries) {
-                    val neighborPos = currentPos.offset(direction)
-
-                    if (
-                        !visited.contains(neighborPos) &&
-                        neighborPos.getSquaredDistance(startPos) <= rangeSq // 探索範囲内のチェック
-                    ) {
-                        val neighborBlock = world.getBlockState(neighborPos).block
-                        if (isOreBlock(neighborBlock)) {
-                            queue.offer(neighborPos)
-                            visited.add(neighborPos)
-                        } else {
-                            // 鉱石ではないブロックでも訪問済みリストに追加し、再度チェックされるのを防ぐ
-                            visited.add(neighborPos)
-                        }
-                    }
-                }
-            }
+        val range = breakRange.value
+        val rangeSq = range * range
+        // 球状の範囲を囲む箱で先に絞り込み、距離の計算は箱の内側だけで行う
+        val radius = ceil(range).toInt()
+        val bounds = BlockBox(startPos).expand(radius)
+        FloodFill(maxAccepted = maxBlocks.value.toInt(), bounds = bounds).run(
+            startPos,
+            onAccept = { blocksToMine.add(it.toImmutable()) },
+        ) { pos ->
+            // 破壊範囲のチェック（プレイヤーからではなくstartPosからの距離で判定）
+            pos.getSquaredDistance(startPos) <= rangeSq && isOreBlock(world.getBlockState(pos).block)
         }
     }
 
     /**
      * 破壊リスト内のブロックをサーバーに破壊させる。
-     * LinearBreakとほぼ同じ破壊ロジックを使用。
+     * 破壊は [BreakScheduler] が、1ティックに送るパケットの数を [packetsPerTick] 以下に抑えながらまとめて進める。
      */
     private fun mine() {
-        val interactionManager = client.interactionManager ?: return
         val player = player ?: return
 
         // 修正点: 設定が無効な場合のみ、ホットバー切り替え時のキャンセルチェックを行う
         if (!ignoreHotbarChange.value) {
-            if (currentBreakingPos != null && startHotbarSlot != -1 && player.inventory.selectedSlot != startHotbarSlot) {
+            if (scheduler.isBreaking && startHotbarSlot != -1 && player.inventory.selectedSlot != startHotbarSlot) {
                 if (autoToolCallBack == player.inventory.selectedSlot) {
                     startHotbarSlot = autoToolCallBack
                 } else {
                     // ホットバーが切り替わった場合、破壊をキャンセルしリストから削除
-                    interactionManager.cancelBlockBreaking()
-                    blocksToMine.remove(currentBreakingPos)
-                    // 状態をリセット
-                    currentBreakingPos = null
-                    currentBreakingSide = null
-                    currentBreakingProgress = 0.0f
+                    currentBreakingPos?.let { blocksToMine.remove(it) }
+                    scheduler.cancel()
                     startHotbarSlot = -1
                     return
                 }
             }
-            // ----------------------------------------------------
         }
 
         // 1. 破壊対象のブロックがない場合、現在の破壊を中止
         if (blocksToMine.isEmpty()) {
-            if (currentBreakingPos != null) {
-                interactionManager.cancelBlockBreaking()
-                currentBreakingPos = null
-                currentBreakingSide = null
-                currentBreakingProgress = 0.0f
-            }
+            if (scheduler.isBreaking) scheduler.cancel()
+            startHotbarSlot = -1
             return
         }
 
-        // 2. ターゲットの決定とブロック状態のチェック
-        val targetPos = blocksToMine.first()
-        val blockState = client.world?.getBlockState(targetPos)
-
-        // ターゲットブロックが空気または置換可能なら、破壊リストから削除
-        if (blockState?.isAir == true || blockState?.isReplaceable == true) {
-            blocksToMine.remove(targetPos)
-            currentBreakingPos = null
-            currentBreakingProgress = 0.0f
-            return
-        }
+        // 2. 破壊を進める (破壊し終えたブロックや範囲外のブロックはリストから削除される)
+        scheduler.tick(blocksToMine, breakRange.value, packetsPerTick.value)
 
-        // 3. 破壊パラメータの取得と有効性のチェック
-        val params = BlockUtils.getBlockBreakingParams(targetPos)
-
-        // パラメータが取得できない、または距離が離れすぎた場合
-        if (params == null || params.distanceSq > breakRange.value * breakRange.value) {
-            blocksToMine.remove(targetPos)
-            currentBreakingPos = null
-            currentBreakingProgress = 0.0f
-            return
-        }
-
-        // 4. 破壊開始またはターゲット変更
-        if (currentBreakingPos == null || currentBreakingPos != params.pos) {
-            // 前の破壊を中止
-            interactionManager.cancelBlockBreaking()
-
-            // サーバーに視点変更パケットを送信
-            BlockUtils.faceVectorPacket(params.hitVec)
-
-            // 破壊開始
-            interactionManager.updateBlockBreakingProgress(params.pos, params.side)
-
-            // 状態の更新
-            currentBreakingPos = params.pos
-            currentBreakingSide = params.side
-            currentBreakingProgress = 0.0f // 新しいブロックなので0から開始
-
-            // IgnoreHotbarChangeが有効でない場合にのみスロットを保存
-            startHotbarSlot =
-                if (!ignoreHotbarChange.value) {
-                    player.inventory.selectedSlot // ホットバーの状態を保存
-                } else {
-                    -1 // 無視する場合は状態を保存しない
-                }
-        } else {
-            // 5. 進行中: 進行パケットを送信し、進行度を更新
-            val pos = currentBreakingPos!!
-            val side = currentBreakingSide!!
-            interactionManager.updateBlockBreakingProgress(pos, side)
-            currentBreakingProgress = interactionManager.currentBreakingProgress
-
-            val fastBreak = InfiniteClient.getFeature(FastBreak::class.java) ?: return
-            if (fastBreak.isEnabled() && !fastBreak.safeMode.value) {
-                fastBreak.handle(pos)
+        // 3. IgnoreHotbarChangeが有効でない場合にのみ、破壊開始時のスロットを保存
+        startHotbarSlot =
+            when {
+                !scheduler.isBreaking || ignoreHotbarChange.value -> -1
+                startHotbarSlot == -1 -> player.inventory.selectedSlot
+                else -> startHotbarSlot
             }
-            // 破壊が完了したと見なせる場合（次のtickでブロックが消えるはずだが、念のため）
-            if (currentBreakingProgress >= 1.0f) {
-                currentBreakingPos = null
-                currentBreakingProgress = 0.0f
-            }
-        }
 
-        // 6. 手を振る
-        if (swingHand.value) {
+        // 4. 手を振る
+        if (swingHand.value && scheduler.isBreaking) {
             player.swingHand(Hand.MAIN_HAND)
         }
     }
@@ -299,8 +213,8 @@ class VeinBreak : ConfigurableFeature() {
         graphics3D.renderLinedColorBoxes(boxes, true)
 
         // 破壊中のブロックに進行度に応じたハイライトを追加
-        currentBreakingPos?.let { pos ->
-            val progress = currentBreakingProgress.coerceIn(0.0f, 1.0f)
+        val progressBoxes = ArrayList<RenderUtils.ColorBox>(2)
+        scheduler.forEachBreaking { pos, progress ->
             val offset = (1.0 - progress) * 0.5 // ブロックの中心から外側へ拡大するためのオフセット
             val minX = pos.x + offset
             val minY = pos.y + offset
@@ -311,10 +225,9 @@ class VeinBreak : ConfigurableFeature() {
 
             // 進行度に応じて縮小/拡大するボックス
             val dynamicBox = Box(minX, minY, minZ, maxX, maxY, maxZ).contract(0.005)
-
-            val boxes = listOf(RenderUtils.ColorBox(color, dynamicBox))
-            graphics3D.renderSolidColorBoxes(boxes, true)
+            progressBoxes.add(RenderUtils.ColorBox(color, dynamicBox))
         }
+        graphics3D.renderSolidColorBoxes(progressBoxes, true)
     }
 
     /**
@@ -331,19 +244,13 @@ class VeinBreak : ConfigurableFeature() {
     // VeinBreakの有効化/無効化時に状態をリセット
     override fun enabled() {
         blocksToMine.clear()
-        currentBreakingPos = null
-        currentBreakingSide = null
-        currentBreakingProgress = 0.0f
+        scheduler.cancel()
         startHotbarSlot = -1
     }
 
     override fun disabled() {
-        val interactionManager = client.interactionManager ?: return
-        interactionManager.cancelBlockBreaking()
         blocksToMine.clear()
-        currentBreakingPos = null
-        currentBreakingSide = null
-        currentBreakingProgress = 0.0f
+        scheduler.cancel()
         startHotbarSlot = -1
     }
 }
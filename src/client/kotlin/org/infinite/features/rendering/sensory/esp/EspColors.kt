@@ -0,0 +1,54 @@
+package org.infinite.features.rendering.sensory.esp
+
+import net.minecraft.util.Rarity
+import org.infinite.InfiniteClient
+
+/**
+ * エンティティESPで使用する色を、エンティティの種別ごとに解決してキャッシュするテーブル。
+ * テーマが変更された時のみ再計算されるため、描画状態の更新ごとの取得は配列の参照だけで済みます。
+ */
+object EspColors {
+    enum class Category {
+        Player,
+        Hostile,
+        Passive,
+        Neutral,
+        ItemCommon,
+        ItemUncommon,
+        ItemRare,
+        ItemEpic,
+    }
+
+    private val table = IntArray(Category.entries.size)
+
+    // テーブルを解決した時点のテーマのリビジョン (-1 は未解決)
+    private var resolvedRevision = -1
+
+    fun get(category: Category): Int {
+        if (resolvedRevision != InfiniteClient.themeRevision) {
+            resolve()
+        }
+        return table[category.ordinal]
+    }
+
+    fun rarity(rarity: Rarity): Int =
+        when (rarity) {
+            Rarity.UNCOMMON -> get(Category.ItemUncommon)
+            Rarity.RARE -> get(Category.ItemRare)
+            Rarity.EPIC -> get(Category.ItemEpic)
+            else -> get(Category.ItemCommon)
+        }
+
+    private fun resolve() {
+        val colors = InfiniteClient.theme().colors
+        table[Category.Player.ordinal] = colors.aquaAccentColor
+        table[Category.Hostile.ordinal] = colors.redAccentColor // 敵対モブ -> 赤
+        table[Category.Passive.ordinal] = colors.greenAccentColor // 友好モブ -> 緑
+        table[Category.Neutral.ordinal] = colors.yellowAccentColor // 中立モブ -> 黄
+        table[Category.ItemCommon.ordinal] = colors.foregroundColor
+        table[Category.ItemUncommon.ordinal] = colors.yellowAccentColor
+        table[Category.ItemRare.ordinal] = colors.aquaAccentColor
+        table[Category.ItemEpic.ordinal] = colors.magentaAccentColor
+        resolvedRevision = InfiniteClient.themeRevision
+    }
+}
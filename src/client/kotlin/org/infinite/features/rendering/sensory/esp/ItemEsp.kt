@@ -3,7 +3,6 @@ package org.infinite.features.rendering.sensory.esp
 import net.minecraft.client.MinecraftClient
 import net.minecraft.client.render.entity.state.ItemEntityRenderState
 import net.minecraft.entity.ItemEntity
-import net.minecraft.util.Rarity
 import net.minecraft.util.math.Box
 import net.minecraft.util.math.MathHelper
 import net.minecraft.util.math.Vec3d
@@ -55,33 +54,7 @@ object ItemEsp {
         graphics3d.renderLinedColorBoxes(renderBoxes, true)
     }
 
-    private fun rarityColor(entity: ItemEntity): Int =
-        when (entity.stack.rarity) {
-            Rarity.COMMON ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.foregroundColor
-
-            Rarity.UNCOMMON ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.yellowAccentColor
-
-            Rarity.RARE ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.aquaAccentColor
-
-            Rarity.EPIC ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.magentaAccentColor
-
-            else ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.foregroundColor
-        }
+    private fun rarityColor(entity: ItemEntity): Int = EspColors.rarity(entity.stack.rarity)
 
     private fun itemBox(
         entity: ItemEntity,
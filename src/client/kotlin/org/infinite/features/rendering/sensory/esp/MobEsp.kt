@@ -65,19 +65,10 @@ object MobEsp {
      */
     private fun mobColor(entity: LivingEntity): Int =
         when (entity) {
-            is HostileEntity ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.redAccentColor // 敵対モブ -> 赤
-            is PassiveEntity ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.greenAccentColor // 友好モブ -> 緑
-            // 中立モブ、あるいはどちらにも分類されないモブ -> 黄
-            else ->
-                org.infinite.InfiniteClient
-                    .theme()
-                    .colors.yellowAccentColor
+            is HostileEntity -> EspColors.get(EspColors.Category.Hostile)
+            is PassiveEntity -> EspColors.get(EspColors.Category.Passive)
+            // 中立モブ、あるいはどちらにも分類されないモブ
+            else -> EspColors.get(EspColors.Category.Neutral)
         }
 
     /**
@@ -13,10 +13,8 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo
 import kotlin.math.sqrt
 
 object PlayerEsp {
-    private val BOX_COLOR =
-        org.infinite.InfiniteClient
-            .theme()
-            .colors.aquaAccentColor
+    private val BOX_COLOR
+        get() = EspColors.get(EspColors.Category.Player)
     private const val EXPAND = 0.05
 
     private fun otherPlayers(): List<PlayerEntity> {
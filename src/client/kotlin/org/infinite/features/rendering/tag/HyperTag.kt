@@ -8,9 +8,11 @@ import net.minecraft.entity.mob.MobEntity
 import net.minecraft.entity.passive.PassiveEntity
 import net.minecraft.entity.player.PlayerEntity
 import net.minecraft.util.math.ColorHelper
+import net.minecraft.util.math.MathHelper
 import org.infinite.ConfigurableFeature
 import org.infinite.libs.graphics.Graphics2D
 import org.infinite.libs.graphics.Graphics3D
+import org.infinite.libs.graphics.ScreenProjection
 import org.infinite.settings.FeatureSetting
 import org.infinite.utils.rendering.getRainbowColor
 import org.infinite.utils.rendering.transparent
@@ -48,41 +50,42 @@ class HyperTag : ConfigurableFeature(initialEnabled = false) {
 
     private data class TagRenderInfo(
         val entity: LivingEntity,
-        val pos: Graphics2D.DisplayPos,
+        val index: Int, // 投影バッファ内のインデックス
         val distSq: Double, // 距離の二乗を保存
     )
 
     private val targetEntities: MutableList<TagRenderInfo> = mutableListOf()
 
+    // 頭上の座標をまとめて投影するためのバッファ (フレーム間で再利用する)
+    private val projection = ScreenProjection.Buffer()
+
     override fun render3d(graphics3D: Graphics3D) {
         targetEntities.clear()
+        projection.clear()
         val client = MinecraftClient.getInstance()
         val player = client.player ?: return
         val entities = client.world?.entities ?: return
 
-        val maxDistSq = distance.value * distance.value // 距離の2乗を事前に計算
-
-        val livingEntities =
-            entities
-                .filter { it is LivingEntity }
-                .filter {
-                    (players.value && it is PlayerEntity) || (mobs.value && it is MobEntity)
-                }.map { it as LivingEntity }
-                // 🚀 最適化: 距離フィルタリング
-                .filter { player.squaredDistanceTo(it) < maxDistSq || maxDistSq == 0 || always.value }
-                // 🚀 最適化: 体力満タンのモブの描画をスキップ (プレイヤーは常に表示)
-                .filter { it is PlayerEntity || it.health < it.maxHealth || always.value }
-
-        for (entity in livingEntities) {
-            val aboveHeadPos =
-                entity
-                    .getLerpedPos(graphics3D.tickCounter.getTickProgress(false))
-                    .add(0.0, entity.getEyeHeight(entity.pose) + 1.5, 0.0)
-            val pos2d = graphics3D.toDisplayPos(aboveHeadPos)
-            if (pos2d != null) {
-                targetEntities.add(TagRenderInfo(entity, pos2d, player.squaredDistanceTo(entity))) // distSqを保存
-            }
+        val maxDistSq = distance.intValue * distance.intValue // 距離の2乗を事前に計算
+        val tickProgress = graphics3D.tickCounter.getTickProgress(false)
+
+        for (entity in entities) {
+            if (entity !is LivingEntity) continue
+            if (!((players.booleanValue && entity is PlayerEntity) || (mobs.booleanValue && entity is MobEntity))) continue
+            val distSq = player.squaredDistanceTo(entity)
+            // 🚀 最適化: 距離フィルタリング
+            if (!(distSq < maxDistSq || maxDistSq == 0 || always.booleanValue)) continue
+            // 🚀 最適化: 体力満タンのモブの描画をスキップ (プレイヤーは常に表示)
+            if (!(entity is PlayerEntity || entity.health < entity.maxHealth || always.booleanValue)) continue
+
+            val x = MathHelper.lerp(tickProgress.toDouble(), entity.lastRenderX, entity.x)
+            val y = MathHelper.lerp(tickProgress.toDouble(), entity.lastRenderY, entity.y)
+            val z = MathHelper.lerp(tickProgress.toDouble(), entity.lastRenderZ, entity.z)
+            val index = projection.add(x, y + entity.getEyeHeight(entity.pose) + 1.5, z)
+            targetEntities.add(TagRenderInfo(entity, index, distSq))
         }
+        // 行列の合成はフレームごとに一度だけ行われ、ここではまとめて投影するだけ
+        projection.project()
     }
 
     /**
@@ -141,12 +144,12 @@ class HyperTag : ConfigurableFeature(initialEnabled = false) {
             )
         val itemRenderSize = 16 // アイテム描画サイズ (通常16x16)
         val itemPadding = 2
-        val minScaleDist = minScaleDistance.value.toDouble()
-        val maxDist = distance.value.toDouble()
+        val minScaleDist = minScaleDistance.intValue.toDouble()
+        val maxDist = distance.intValue.toDouble()
 
         for (renderInfo in targetEntities) {
+            if (!projection.isVisible(renderInfo.index)) continue
             val entity = renderInfo.entity
-            val pos = renderInfo.pos
             val distSq = renderInfo.distSq
             val distance = sqrt(distSq) // 距離の計算
             val isPlayer = entity is PlayerEntity
@@ -177,7 +180,7 @@ class HyperTag : ConfigurableFeature(initialEnabled = false) {
                 }
             // スケールを適用 (描画の中心を原点として扱うために pushState を使用)
             graphics2D.pushState()
-            graphics2D.translate(pos.x.toFloat(), pos.y.toFloat())
+            graphics2D.translate(projection.screenX(renderInfo.index), projection.screenY(renderInfo.index))
             graphics2D.scale(scale, scale)
 
             // スケール適用後の座標計算は、(0, 0) を基準に行う
@@ -205,7 +208,7 @@ class HyperTag : ConfigurableFeature(initialEnabled = false) {
             // 🚀 修正: アイテムを持つスロットの数をカウント
             val equippedItems = equipmentSlots.map { entity.getEquippedStack(it) }
             val visibleItemCount =
-                if (showItems.value) {
+                if (showItems.booleanValue) {
                     equippedItems.count { !it.isEmpty } // 空でないアイテムスタックの数
                 } else {
                     0
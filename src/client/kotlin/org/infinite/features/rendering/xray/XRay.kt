@@ -2,11 +2,13 @@ package org.infinite.features.rendering.xray
 
 import net.minecraft.block.Block
 import net.minecraft.block.BlockState
-import net.minecraft.client.MinecraftClient
+import net.minecraft.block.Blocks
 import net.minecraft.registry.Registries
+import net.minecraft.util.Identifier
 import net.minecraft.util.math.BlockPos
 import net.minecraft.util.math.Direction
 import org.infinite.ConfigurableFeature
+import org.infinite.libs.world.SectionRebuildScheduler
 import org.infinite.settings.FeatureSetting
 import org.infinite.settings.Property
 import org.lwjgl.glfw.GLFW
@@ -126,21 +128,78 @@ class XRay : ConfigurableFeature(initialEnabled = false) {
             ),
         )
 
-    // ... (enabled/disabled関数は変更なし)
+    // 解決済みのブロックリスト (描画判定のたびに文字列を生成しないようにキャッシュする)
+    // チャンクメッシュ生成スレッドからも参照されるため、差し替えは参照の代入のみで行う
+    @Volatile
+    private var throughBlocks: Set<Block> = emptySet()
+
+    @Volatile
+    private var exposedBlocks: Set<Block> = emptySet()
+
+    // 変更検知用に保持している設定値のスナップショット
+    private var lastThroughList: List<String> = emptyList()
+    private var lastExposedList: List<String> = emptyList()
+    @Volatile
+    private var lastMethod: XRayMode? = null
+
     override fun enabled() {
-        // Trigger world re-render when XRay is enabled
-        MinecraftClient.getInstance().worldRenderer.reload()
+        refreshBlockLists()
+        // XRayの有効化で見え方が変わるのは空気以外の全ブロックなので、空でないセクションのみ再構築する
+        SectionRebuildScheduler.request { !it.isAir }
     }
 
     override fun disabled() {
-        // Trigger world re-render when XRay is disabled
-        MinecraftClient.getInstance().worldRenderer.reload()
+        SectionRebuildScheduler.request { !it.isAir }
     }
 
-    // 設定リストを取得する補助関数
-    private fun getThroughBlockList(): Set<String> = (settings[1] as FeatureSetting.BlockListSetting).value.toSet()
+    override fun tick() {
+        // 設定画面やコマンドでリストが編集された場合、見え方が変わったブロックを含むセクションだけを再構築する
+        val oldThrough = throughBlocks
+        val oldExposed = exposedBlocks
+        val oldMethod = lastMethod
+        if (!refreshBlockLists()) return
+        val changed =
+            if (oldMethod != lastMethod) {
+                // 描画方法が変わった場合は、新旧どちらかのリストに含まれるブロックがすべて対象
+                oldThrough + oldExposed + throughBlocks + exposedBlocks
+            } else {
+                (oldThrough symmetricDifference throughBlocks) + (oldExposed symmetricDifference exposedBlocks)
+            }
+        if (changed.isNotEmpty()) {
+            SectionRebuildScheduler.request { changed.contains(it.block) }
+        }
+    }
+
+    private infix fun <E> Set<E>.symmetricDifference(other: Set<E>): Set<E> = (this - other) + (other - this)
+
+    /**
+     * 設定値が前回から変化していれば、解決済みのブロックリストを更新します。
+     * @return 更新が行われた場合 true
+     */
+    private fun refreshBlockLists(): Boolean {
+        val through = (settings[1] as FeatureSetting.BlockListSetting).value
+        val exposed = (settings[2] as FeatureSetting.BlockListSetting).value
+        val method = getSetting("Method")?.value as? XRayMode
+        if (through == lastThroughList && exposed == lastExposedList && method == lastMethod) {
+            return false
+        }
+        lastThroughList = through.toList()
+        lastExposedList = exposed.toList()
+        lastMethod = method
+        throughBlocks = resolveBlocks(lastThroughList)
+        exposedBlocks = resolveBlocks(lastExposedList)
+        return true
+    }
 
-    private fun getExposedBlockList(): Set<String> = (settings[2] as FeatureSetting.BlockListSetting).value.toSet()
+    private fun resolveBlocks(ids: List<String>): Set<Block> =
+        ids
+            .mapNotNull { id ->
+                try {
+                    Registries.BLOCK.get(Identifier.of(id)).takeIf { it != Blocks.AIR }
+                } catch (_: Exception) {
+                    null
+                }
+            }.toSet()
 
     /**
      * ブロックがXRayで描画されるべきかどうか（全体として）を判断します。
@@ -149,39 +208,10 @@ class XRay : ConfigurableFeature(initialEnabled = false) {
     fun isVisible(
         block: Block,
         pos: BlockPos,
-    ): Boolean {
-        val blockId = Registries.BLOCK.getId(block).toString()
-        val throughList = getThroughBlockList()
-        val exposedList = getExposedBlockList()
-
-        // 描画リストに明示的に含まれているブロックのみを対象とする
-        if (throughList.contains(blockId)) {
-            return true
-        }
-        if (exposedList.contains(blockId)) {
-            return true
-        }
+    ): Boolean = isXRayTarget(block)
 
-        // どのリストにも含まれていない場合、描画対象外とする
-        return false
-    }
-
-    // ★ 補助関数: ブロックIDがXRayのターゲット（ThroughまたはExposed）であるかを判定
-    private fun isXRayTarget(blockId: String): Boolean {
-        val throughList = getThroughBlockList()
-        val exposedList = getExposedBlockList()
-        return throughList.contains(blockId) || exposedList.contains(blockId)
-    }
-
-    // ★ 補助関数: ブロックIDがNormalモードのターゲットであるかを判定
-    private fun isNormalModeTarget(blockId: String): Boolean = isXRayTarget(blockId)
-
-    // ★ 補助関数: ブロックIDがOnlyExposedモードのターゲットであるかを判定
-    private fun isOnlyExposedModeTarget(blockId: String): Boolean {
-        val throughList = getThroughBlockList()
-        val exposedList = getExposedBlockList()
-        return throughList.contains(blockId) || exposedList.contains(blockId)
-    }
+    // ★ 補助関数: ブロックがXRayのターゲット（ThroughまたはExposed）であるかを判定
+    private fun isXRayTarget(block: Block): Boolean = throughBlocks.contains(block) || exposedBlocks.contains(block)
 
     /**
      * 描画されるブロックの特定の面を描画するかどうかを判断します。
@@ -199,14 +229,10 @@ class XRay : ConfigurableFeature(initialEnabled = false) {
         if (!isEnabled()) return null
 
         val block = blockState.block
-        val blockId = Registries.BLOCK.getId(block).toString()
-        val method = getSetting("Method")?.value as? XRayMode ?: return null
-
-        val throughList = getThroughBlockList()
-        val exposedList = getExposedBlockList()
+        val neighborBlock = neighborState.block
+        val method = lastMethod ?: return null
 
-        val neighborBlockId = Registries.BLOCK.getId(neighborState.block).toString()
-        val isNeighborAir = neighborBlockId == "minecraft:air"
+        val isNeighborAir = neighborState.isAir
 
         // 1. まず、現在のブロックがXRay対象リストに載っているかチェック (装飾ブロックの除外)
         if (!isVisible(block, blockPos)) {
@@ -217,8 +243,8 @@ class XRay : ConfigurableFeature(initialEnabled = false) {
 
         return when (method) {
             XRayMode.Normal -> {
-                val isCurrentTarget = isNormalModeTarget(blockId)
-                val isNeighborTarget = isNormalModeTarget(neighborBlockId)
+                val isCurrentTarget = isXRayTarget(block)
+                val isNeighborTarget = isXRayTarget(neighborBlock)
 
                 if (isCurrentTarget) {
                     !isNeighborTarget
@@ -228,8 +254,8 @@ class XRay : ConfigurableFeature(initialEnabled = false) {
             }
 
             XRayMode.OnlyExposed -> {
-                val isCurrentTarget = isOnlyExposedModeTarget(blockId)
-                val isNeighborTarget = isOnlyExposedModeTarget(neighborBlockId)
+                val isCurrentTarget = isXRayTarget(block)
+                val isNeighborTarget = isXRayTarget(neighborBlock)
 
                 if (!isCurrentTarget) return false // 再チェック
 
@@ -239,9 +265,9 @@ class XRay : ConfigurableFeature(initialEnabled = false) {
                 }
 
                 // 露出ロジック（カリングチェックを通過した場合に適用）
-                if (throughList.contains(blockId)) {
+                if (throughBlocks.contains(block)) {
                     true // Throughは常に描画 **<-- 修正済み**
-                } else if (exposedList.contains(blockId)) {
+                } else if (exposedBlocks.contains(block)) {
                     isNeighborAir // Exposedは隣接が空気なら描画 **<-- 修正済み**
                 } else {
                     false
@@ -12,6 +12,9 @@ import org.infinite.settings.FeatureSetting
 class AutoConnect : ConfigurableFeature() {
     var lastServer: ServerInfo? = null
 
+    // 無効な間も接続先を記録しておく (マルチプレイ画面の「前回のサーバー」ボタンで使用)
+    override val startEagerly = true
+
     override fun start() {
         lastServer = MinecraftClient.getInstance().currentServerEntry
     }
@@ -7,6 +7,8 @@ import net.minecraft.client.texture.NativeImage
 import net.minecraft.client.texture.NativeImageBackedTexture
 import net.minecraft.util.Identifier
 import net.minecraft.util.WorldSavePath
+import org.infinite.libs.metrics.MetricsRegistry
+import org.infinite.libs.metrics.PrometheusWriter
 import java.awt.image.BufferedImage
 import java.nio.file.Path
 import java.util.concurrent.ConcurrentHashMap
@@ -15,11 +17,19 @@ import kotlin.io.path.createDirectories
 
 object MapTextureManager {
     private const val CHUNK_SIZE = 16
+    private const val TILE_IO_METRIC = "infinite_map_tile_io_seconds"
+    private const val TILE_IO_HELP = "Time spent reading or writing map tile images"
 
     // キャッシュキーは dimension_chunkX_chunkZ_fileName になります
     private val textureCache: ConcurrentHashMap<String, NativeImageBackedTexture> = ConcurrentHashMap()
     private val gson = Gson()
 
+    // タイル画像の読み書きにかかった時間
+    private val tileWriteLatency =
+        MetricsRegistry.histogram(TILE_IO_METRIC, TILE_IO_HELP, PrometheusWriter.labels("op" to "write"))
+    private val tileReadLatency =
+        MetricsRegistry.histogram(TILE_IO_METRIC, TILE_IO_HELP, PrometheusWriter.labels("op" to "read"))
+
     /**
      * チャンクのブロックデータからテクスチャを生成し、ファイルに保存します。
      * また、生成されたテクスチャを管理し、Identifierを返します。
@@ -49,8 +59,10 @@ object MapTextureManager {
         chunkDir.createDirectories() // ディレクトリが存在しない場合は作成
         val outputFile = chunkDir.resolve(fileName).toFile()
 
+        val writeStart = System.nanoTime()
         try {
             ImageIO.write(image, "PNG", outputFile)
+            tileWriteLatency.record(System.nanoTime() - writeStart)
         } catch (e: Exception) {
             System.err.println("Failed to save chunk texture ($fileName) for chunk ($chunkX, $chunkZ): ${e.message}")
         }
@@ -106,7 +118,9 @@ object MapTextureManager {
         val client = MinecraftClient.getInstance()
         val textureManager = client.textureManager
         try {
+            val readStart = System.nanoTime()
             val image = ImageIO.read(inputFile) ?: throw IllegalStateException("ImageIO failed to read file: $fileName")
+            tileReadLatency.record(System.nanoTime() - readStart)
             val nativeImage = NativeImage(image.width, image.height, true)
             for (imgY in 0 until image.height) {
                 for (imgX in 0 until image.width) {
@@ -1,8 +1,13 @@
 package org.infinite.features.utils.tool
 
 import net.minecraft.block.Block
+import net.minecraft.block.BlockState
+import net.minecraft.entity.player.PlayerInventory
+import net.minecraft.item.ItemStack
 import net.minecraft.item.Items
 import net.minecraft.registry.Registries
+import net.minecraft.util.math.BlockPos
+import net.minecraft.world.EmptyBlockView
 import org.infinite.ConfigurableFeature
 import org.infinite.InfiniteClient
 import org.infinite.features.movement.braek.LinearBreak
@@ -11,6 +16,8 @@ import org.infinite.features.rendering.detailinfo.ToolChecker
 import org.infinite.libs.client.inventory.InventoryManager
 import org.infinite.libs.client.inventory.InventoryManager.InventoryIndex
 import org.infinite.settings.FeatureSetting
+import java.util.IdentityHashMap
+import kotlin.math.ceil
 
 /**
  * プレイヤーがブロックを掘り始めた際に、そのブロックに対する最適なツールを自動で手に持ちます。
@@ -125,30 +132,73 @@ class AutoTool : ConfigurableFeature(initialEnabled = false) {
         return null
     }
 
-    override fun tick() {
-        val linearBreak = InfiniteClient.getFeature(LinearBreak::class.java)
-        val veinBreak = InfiniteClient.getFeature(VeinBreak::class.java)
-        val isLinearBreakWorking = linearBreak?.isWorking ?: false
-        val isVeinBreakWorking = veinBreak?.isWorking ?: false
-        val isInteractingToBlock = interactionManager?.isBreakingBlock ?: false
-        val blockPos =
-            when {
-                isLinearBreakWorking -> linearBreak.currentBreakingPos
-                isVeinBreakWorking -> veinBreak.currentBreakingPos
-                else -> interactionManager?.currentBreakingPos
-            }
-        val isMining = isInteractingToBlock || isLinearBreakWorking || isVeinBreakWorking
-        if (!isMining || blockPos == null) {
-            resetTool()
-            return
+    /**
+     * ブロックに対する最適なツールの選択結果。
+     *
+     * @param index 最適なツールの位置。素手で掘る場合や、ツールが見つからない場合は null
+     * @param breakingTicks そのツール (null の場合は素手) で破壊にかかるティック数の見積もり。破壊できない場合は Float.POSITIVE_INFINITY
+     */
+    class ToolChoice(
+        val index: InventoryIndex?,
+        val breakingTicks: Float,
+    )
+
+    // BlockState -> 選択結果。インベントリの内容か設定が変わるまで再利用する
+    private val toolCache = IdentityHashMap<BlockState, ToolChoice>()
+    private var cachedInventory: PlayerInventory? = null
+    private var cachedChangeCount = -1
+    private var cachedRevision = -1
+    private var cachedStrategy: FineToolStrategy? = null
+
+    /**
+     * [state] を掘るのに最適なツールと、破壊にかかる時間の見積もりを返します。
+     *
+     * 結果はインベントリの内容が変わる (スロットの更新で [PlayerInventory.getChangeCount] か
+     * 画面のリビジョンが進む) まで保持するため、毎ティック呼び出しても検索は繰り返されません。
+     * AutoToolが無効でも使用でき、VeinBreakやBranchMinerなどが作業を計画する際にも利用できます。
+     * 見積もりはツールの採掘速度と適正の有無から求め、効率強化やステータス効果は考慮しません。
+     */
+    fun toolFor(state: BlockState): ToolChoice {
+        val inventory = player?.inventory
+        val revision = player?.playerScreenHandler?.revision ?: -1
+        val changeCount = inventory?.changeCount ?: -1
+        if (inventory !== cachedInventory ||
+            changeCount != cachedChangeCount ||
+            revision != cachedRevision ||
+            fineToolStrategy.value != cachedStrategy
+        ) {
+            toolCache.clear()
+            cachedInventory = inventory
+            cachedChangeCount = changeCount
+            cachedRevision = revision
+            cachedStrategy = fineToolStrategy.value
         }
-        val blockState = world?.getBlockState(blockPos) ?: return
-        val block = blockState.block
+        return toolCache.getOrPut(state) {
+            val index = selectTool(state.block)
+            ToolChoice(index, estimateBreakingTicks(state, index?.let { InventoryManager.get(it) } ?: ItemStack.EMPTY))
+        }
+    }
+
+    // ツールの採掘速度と適正の有無から、破壊にかかるティック数を見積もる
+    private fun estimateBreakingTicks(
+        state: BlockState,
+        stack: ItemStack,
+    ): Float {
+        val hardness = state.getHardness(EmptyBlockView.INSTANCE, BlockPos.ORIGIN)
+        if (hardness < 0f) return Float.POSITIVE_INFINITY
+        if (hardness == 0f) return 1f
+        val harvestable = !state.isToolRequired || stack.isSuitableFor(state)
+        val delta = stack.getMiningSpeedMultiplier(state) / hardness / (if (harvestable) 30f else 100f)
+        return ceil(1f / delta).coerceAtLeast(1f)
+    }
+
+    /**
+     * [block] に対する最適なツールをインベントリから探します。素手で掘る場合や、見つからない場合は null を返します。
+     */
+    private fun selectTool(block: Block): InventoryIndex? {
         val correctToolInfo = ToolChecker.getCorrectTool(block)
         val toolKind = correctToolInfo.toolKind
         val requiredToolLevel = correctToolInfo.toolLevel
-        var bestToolIndex: InventoryIndex?
-        var bestToolItem = Items.AIR
 
         // ----------------------------------------------------
         // 1. 特殊ブロック処理: 最低レベルが0以下 かつ 特殊ツールの対象ブロックの場合のみ
@@ -156,12 +206,9 @@ class AutoTool : ConfigurableFeature(initialEnabled = false) {
         val isSpecialBlock = requiredToolLevel <= 0 && isFineToolTarget(block)
 
         if (isSpecialBlock) {
-            when (fineToolStrategy.value) {
+            return when (fineToolStrategy.value) {
                 FineToolStrategy.Shears -> {
-                    bestToolIndex = InventoryManager.findFirstInMain(Items.SHEARS)
-                    if (bestToolIndex != null) {
-                        bestToolItem = Items.SHEARS
-                    }
+                    InventoryManager.findFirstInMain(Items.SHEARS)
                 }
 
                 FineToolStrategy.SharpTool -> {
@@ -182,67 +229,54 @@ class AutoTool : ConfigurableFeature(initialEnabled = false) {
                             }
                         }
                     }
-
-                    bestToolIndex = bestSharpToolIndex
-                    if (bestToolIndex != null) {
-                        bestToolItem = InventoryManager.get(bestToolIndex).item
-                    }
+                    bestSharpToolIndex
                 }
 
                 FineToolStrategy.Hand -> {
-                    resetTool()
-                    return
+                    null
                 }
             }
-
-            // 特殊ツールが見つかった場合
-            if (bestToolIndex != null) {
-                val currentlyHeldItem = InventoryManager.get(InventoryIndex.MainHand())
-
-                if (currentlyHeldItem.item == bestToolItem) {
-                    return
-                }
-
-                handleToolSwitch(bestToolIndex)
-                return // 特殊ツールの切り替えが完了
-            }
-
-            // 特殊ブロックだが、特殊ツールがインベントリにない場合
-            resetTool()
-            return
         }
 
         // ----------------------------------------------------
         // 2. メインのツール検索処理 (グレード付きのツール)
         //    requiredToolLevel >= 0 に緩和し、レベル0のツルハシブロックも対象とする
         // ----------------------------------------------------
+        if (requiredToolLevel < 0 || toolKind == null) return null
+        return findBestTool(toolKind, requiredToolLevel)
+    }
 
-        if (requiredToolLevel >= 0) { // レベル0も含め、ツール検索を行う
-            if (toolKind == null) {
-                resetTool()
-                return
-            }
-
-            bestToolIndex = findBestTool(toolKind, requiredToolLevel)
-
-            if (bestToolIndex != null) {
-                bestToolItem = InventoryManager.get(bestToolIndex).item
-
-                val currentlyHeldItem = InventoryManager.get(InventoryIndex.MainHand())
-
-                if (currentlyHeldItem.item == bestToolItem) {
-                    return
-                }
-
-                handleToolSwitch(bestToolIndex)
-            } else {
-                // 最適なツールが見つからない
-                resetTool()
+    override fun tick() {
+        val linearBreak = InfiniteClient.getFeature(LinearBreak::class.java)
+        val veinBreak = InfiniteClient.getFeature(VeinBreak::class.java)
+        val isLinearBreakWorking = linearBreak?.isWorking ?: false
+        val isVeinBreakWorking = veinBreak?.isWorking ?: false
+        val isInteractingToBlock = interactionManager?.isBreakingBlock ?: false
+        val blockPos =
+            when {
+                isLinearBreakWorking -> linearBreak.currentBreakingPos
+                isVeinBreakWorking -> veinBreak.currentBreakingPos
+                else -> interactionManager?.currentBreakingPos
             }
-        } else {
-            // Special Blockではないが、requiredToolLevelが負の値のブロック（理論上はありえないが安全のため）
+        val isMining = isInteractingToBlock || isLinearBreakWorking || isVeinBreakWorking
+        if (!isMining || blockPos == null) {
             resetTool()
+            return
+        }
+        val blockState = world?.getBlockState(blockPos) ?: return
+        val bestToolIndex = toolFor(blockState).index
+        if (bestToolIndex == null) {
+            // 素手で掘るか、最適なツールが見つからない
+            resetTool()
+            return
+        }
+
+        val bestToolItem = InventoryManager.get(bestToolIndex).item
+        val currentlyHeldItem = InventoryManager.get(InventoryIndex.MainHand())
+        if (currentlyHeldItem.item == bestToolItem) {
+            return
         }
+        handleToolSwitch(bestToolIndex)
     }
 
     /**
@@ -133,6 +133,7 @@ class InfiniteBlockColorListField(
 
             if (idToAdd.isNotBlank() && colorToAdd != null && !setting.value.containsKey(idToAdd)) {
                 setting.value[idToAdd] = colorToAdd
+                setting.notifyChanged()
                 updateScrollableContainer()
                 blockIdTextField.text = ""
                 colorTextField.text = ""
@@ -162,6 +163,7 @@ class InfiniteBlockColorListField(
 
     private fun removeIdFromList(idToRemove: String) {
         if (setting.value.remove(idToRemove) != null) {
+            setting.notifyChanged()
             updateScrollableContainer()
         }
     }
@@ -2,28 +2,127 @@ package org.infinite.libs.ai
 
 import org.infinite.libs.ai.interfaces.AiAction
 import org.infinite.libs.client.player.ClientInterface
+import org.infinite.libs.metrics.MetricsRegistry
+import org.infinite.libs.metrics.PrometheusWriter
+import java.util.EnumSet
+import java.util.IdentityHashMap
+import java.util.concurrent.CompletableFuture
 
+/**
+ * 追加された順にAiActionを実行するスケジューラ。
+ *
+ * 各アクションは [AiAction.lanes] で占有するレーン (移動・操作・インベントリ・視点) を宣言します。
+ * 毎ティック、キューを先頭から順に調べ、それより前にあるアクションとレーンが重ならないアクションをすべて実行します。
+ * レーンが重なるアクションは、前のアクションが終わるまで待機するため、同じレーンの中では追加された順序が保たれます。
+ */
 object AiInterface : ClientInterface() {
     var actions: ArrayDeque<AiAction> = ArrayDeque()
 
+    // 実行を開始したアクションと、その開始時刻 (所要時間のメトリクス用)
+    private val running = IdentityHashMap<AiAction, Long>()
+
+    // tick中に、既に前のアクションが占有したレーン
+    private val claimedLanes: EnumSet<AiAction.Lane> = EnumSet.noneOf(AiAction.Lane::class.java)
+
+    // 計画が不要なアクションに割り当てる、完了済みの Future
+    private val PLANNED: CompletableFuture<Unit> = CompletableFuture.completedFuture(Unit)
+
     fun add(action: AiAction) = actions.addLast(action)
 
+    /**
+     * [lanes] のいずれかを占有するアクションがキューにあれば true を返します。
+     */
+    fun isBusy(vararg lanes: AiAction.Lane): Boolean = actions.any { action -> lanes.any { it in action.lanes } }
+
     fun tick() {
-        val currentAction = actions.firstOrNull() ?: return
-        val state = currentAction.state()
+        // 実行中のまま取り除かれたアクションは計画をキャンセルする
+        if (running.isNotEmpty()) {
+            val iterator = running.keys.iterator()
+            while (iterator.hasNext()) {
+                val action = iterator.next()
+                if (action !in actions) {
+                    cancelPlan(action)
+                    iterator.remove()
+                }
+            }
+        }
+        if (actions.isEmpty()) return
+
+        claimedLanes.clear()
+        // コールバックからキューが変更されてもよいように、コピーを走査する
+        for (action in actions.toList()) {
+            val lanes = action.lanes
+            val blocked = lanes.any { it in claimedLanes }
+            // 待機中のアクションもレーンを占有し、後ろのアクションが追い越さないようにする
+            claimedLanes.addAll(lanes)
+            if (blocked || action !in actions) continue
+            run(action)
+        }
+    }
+
+    private fun run(action: AiAction) {
+        running.putIfAbsent(action, System.nanoTime())
+        if (!isPlanned(action)) return
+        val state =
+            if (action.planning?.isCompletedExceptionally == true) {
+                AiAction.AiActionState.Failure
+            } else {
+                action.state()
+            }
         when (state) {
-            AiAction.AiActionState.Progress -> currentAction.tick()
+            AiAction.AiActionState.Progress -> action.tick()
             AiAction.AiActionState.Success -> {
-                currentAction.onSuccess()
-                actions.remove(currentAction)
+                action.onSuccess()
+                actions.remove(action)
+                recordDuration(action, "success")
             }
 
             AiAction.AiActionState.Failure -> {
-                currentAction.onFailure()
-                actions.remove(currentAction)
+                action.onFailure()
+                actions.remove(action)
+                recordDuration(action, "failure")
             }
         }
     }
 
-    fun clear() = actions.clear()
+    // 計画フェーズを必要に応じて開始し、計画が済んでいれば true を返す
+    private fun isPlanned(action: AiAction): Boolean {
+        val planning = action.planning ?: (action.plan() ?: PLANNED).also { action.planning = it }
+        return planning.isDone
+    }
+
+    private fun cancelPlan(action: AiAction) {
+        val planning = action.planning ?: return
+        if (!planning.isDone) {
+            planning.cancel(false)
+            action.planning = null
+        }
+    }
+
+    private fun recordDuration(
+        action: AiAction,
+        result: String,
+    ) {
+        val since = running.remove(action) ?: return
+        val name = action.javaClass.simpleName.ifEmpty { "anonymous" }
+        MetricsRegistry
+            .histogram(
+                "infinite_ai_action_seconds",
+                "Time from the first tick of an AI action until it finished",
+                PrometheusWriter.labels("action" to name, "result" to result),
+            ).record(System.nanoTime() - since)
+    }
+
+    /**
+     * 同じティックに並行して実行されているアクションの数を返します。
+     */
+    fun runningCount(): Int = running.size
+
+    fun clear() {
+        actions.clear()
+        for (action in running.keys) {
+            cancelPlan(action)
+        }
+        running.clear()
+    }
 }
@@ -0,0 +1,92 @@
+package org.infinite.libs.ai.actions.block
+
+import net.minecraft.util.Hand
+import net.minecraft.util.math.BlockPos
+import org.infinite.InfiniteClient
+import org.infinite.features.utils.tool.AutoTool
+import org.infinite.libs.ai.interfaces.AiAction
+import org.infinite.libs.client.inventory.InventoryManager.InventoryIndex
+import org.infinite.libs.metrics.MetricsRegistry
+import org.infinite.utils.block.BlockUtils
+import java.util.EnumSet
+
+/**
+ * Baritoneを使わずに、手の届く位置にあるブロックをその場で破壊するアクション。
+ *
+ * 移動も視点の操作も行わないため、経由地を辿る [org.infinite.libs.ai.actions.movement.PathMovementAction] などの
+ * 移動系のアクションと並行して実行できます。ブロックが手の届く範囲に入り、見える状態になるまでは待機するため、
+ * 接近する移動アクションと一緒に追加しておけば、届いた時点で破壊を始められます。
+ * [timeoutTicks] の間に破壊できなかった場合は失敗とします。
+ *
+ * @param reachDistance 破壊できる距離 (目の位置から、ブロックの面まで)
+ */
+class BreakBlockAction(
+    val pos: BlockPos,
+    val reachDistance: Double = 4.5,
+    val timeoutTicks: Int = 200,
+    val stateRegister: () -> AiActionState? = { null },
+    val onFailureAction: () -> Unit = {},
+    val onSuccessAction: () -> Unit = {},
+) : AiAction() {
+    // ブロックの破壊とツールの選択だけを行うため、移動系のアクションとは並行して実行できる
+    override val lanes: Set<Lane> = EnumSet.of(Lane.Interaction, Lane.Inventory)
+
+    private var elapsedTicks = 0
+    private var breaking = false
+
+    private val minedBlocks =
+        MetricsRegistry.counter("infinite_ai_blocks_mined_total", "Blocks broken by AI mining actions")
+
+    override fun tick() {
+        elapsedTicks++
+        val interactionManager = interactionManager ?: return
+        val params = BlockUtils.getBlockBreakingParams(pos)
+        if (params == null || !params.lineOfSight || params.distanceSq > reachDistance * reachDistance) {
+            // まだ届かない: 接近を待つ
+            if (breaking) {
+                interactionManager.cancelBlockBreaking()
+                breaking = false
+            }
+            return
+        }
+        selectTool()
+        if (!breaking) BlockUtils.faceVectorPacket(params.hitVec)
+        interactionManager.updateBlockBreakingProgress(params.pos, params.side)
+        player?.swingHand(Hand.MAIN_HAND)
+        breaking = true
+    }
+
+    // AutoToolが選んだツールがホットバーにあれば持ち替える
+    private fun selectTool() {
+        val player = player ?: return
+        val state = world?.getBlockState(pos) ?: return
+        val index = InfiniteClient.getFeature(AutoTool::class.java)?.toolFor(state)?.index
+        if (index is InventoryIndex.Hotbar && player.inventory.selectedSlot != index.index) {
+            player.inventory.selectedSlot = index.index
+        }
+    }
+
+    override fun state(): AiActionState =
+        stateRegister() ?: run {
+            val currentWorld = world ?: return AiActionState.Failure
+            val blockState = currentWorld.getBlockState(pos)
+            when {
+                blockState.isAir || blockState.isReplaceable -> AiActionState.Success
+                blockState.getHardness(currentWorld, pos) < 0f -> AiActionState.Failure
+                elapsedTicks >= timeoutTicks -> AiActionState.Failure
+                else -> AiActionState.Progress
+            }
+        }
+
+    override fun onSuccess() {
+        if (breaking) minedBlocks.inc()
+        breaking = false
+        onSuccessAction()
+    }
+
+    override fun onFailure() {
+        if (breaking) interactionManager?.cancelBlockBreaking()
+        breaking = false
+        onFailureAction()
+    }
+}
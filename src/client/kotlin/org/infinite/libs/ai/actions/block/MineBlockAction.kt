@@ -1,9 +1,13 @@
 package org.infinite.libs.ai.actions.block
 
 import baritone.api.BaritoneAPI
+import net.minecraft.util.math.BlockBox
 import net.minecraft.util.math.BlockPos
 import org.infinite.InfiniteClient
 import org.infinite.libs.ai.interfaces.AiAction
+import org.infinite.libs.ai.pathing.PathBackend
+import org.infinite.libs.metrics.MetricsRegistry
+import java.util.concurrent.CompletableFuture
 
 class MineBlockAction(
     val blockPosList: MutableList<BlockPos>,
@@ -27,6 +31,60 @@ class MineBlockAction(
     // 現在Baritoneに指示しているBlockPosを保持
     private var currentTarget: BlockPos? = null
 
+    // blockPosList が計画フェーズで破壊する順に並べ替えられているか
+    private var planned = false
+
+    private val minedBlocks =
+        MetricsRegistry.counter("infinite_ai_blocks_mined_total", "Blocks broken by AI mining actions")
+
+    /**
+     * 破壊する順序をワーカースレッドで計画します。
+     * 既に空気になっているブロックを除き、プレイヤーの位置から順に最も近いブロックをたどる順序に並べ替えます。
+     */
+    override fun plan(): CompletableFuture<*>? {
+        if (blockPosList.size < 2) return null
+        val start = player?.blockPos ?: return null
+        var bounds = BlockBox(start)
+        for (pos in blockPosList) {
+            bounds = bounds.encompass(pos)
+        }
+        val targets = blockPosList.toList()
+        return planOnSnapshot(
+            bounds,
+            { snapshot -> orderByNearestNeighbor(start, targets.filter { !snapshot.getBlockState(it).isAir }) },
+        ) { ordered ->
+            // 計画中に他から取り除かれたブロックは含めない
+            val remaining = blockPosList.toHashSet()
+            blockPosList.clear()
+            ordered.filterTo(blockPosList) { it in remaining }
+            planned = true
+        }
+    }
+
+    // 最近傍法で並べ替える (ワーカースレッドから呼び出される)
+    private fun orderByNearestNeighbor(
+        start: BlockPos,
+        targets: List<BlockPos>,
+    ): List<BlockPos> {
+        val remaining = targets.toMutableList()
+        val ordered = ArrayList<BlockPos>(remaining.size)
+        var current = start
+        while (remaining.isNotEmpty()) {
+            var nearestIndex = 0
+            var nearestDistance = Double.MAX_VALUE
+            for (i in remaining.indices) {
+                val distance = remaining[i].getSquaredDistance(current)
+                if (distance < nearestDistance) {
+                    nearestDistance = distance
+                    nearestIndex = i
+                }
+            }
+            current = remaining.removeAt(nearestIndex)
+            ordered.add(current)
+        }
+        return ordered
+    }
+
     override fun tick() {
         val playerPos = playerPos ?: return
         // 破壊対象のブロックが残っているか確認
@@ -52,12 +110,16 @@ class MineBlockAction(
             return
         }
 
-        // プレイヤーに最も近いブロックを選択
+        // 計画フェーズで並べ替えた順に破壊する (計画されていない場合はプレイヤーに最も近いブロックを選択)
         val nearestBlock: BlockPos =
-            blockPosList.minByOrNull { pos ->
-                // プレイヤー位置とブロック位置の距離の二乗を計算（sqrtを省略して高速化）
-                pos.getSquaredDistance(playerPos.x, playerPos.y, playerPos.z)
-            } ?: return
+            if (planned) {
+                blockPosList.first()
+            } else {
+                blockPosList.minByOrNull { pos ->
+                    // プレイヤー位置とブロック位置の距離の二乗を計算（sqrtを省略して高速化）
+                    pos.getSquaredDistance(playerPos.x, playerPos.y, playerPos.z)
+                } ?: return
+            }
 
         // 最も近いブロックが現在のターゲットと同じ場合は再設定しない
         if (nearestBlock == currentTarget) {
@@ -72,13 +134,7 @@ class MineBlockAction(
         // 既に破壊されたブロックをリストから削除する処理は、state()で行います
     }
 
-    fun baritoneCheck(): Boolean =
-        try {
-            Class.forName("baritone.api.BaritoneAPI")
-            true
-        } catch (_: ClassNotFoundException) {
-            false
-        }
+    fun baritoneCheck(): Boolean = PathBackend.Baritone.isAvailable
 
     override fun state(): AiActionState =
         if (!baritoneCheck()) {
@@ -93,6 +149,7 @@ class MineBlockAction(
                     if (isCleared) {
                         // 破壊が完了したらリストから削除
                         blockPosList.remove(target)
+                        minedBlocks.inc()
                         // currentTargetをクリアし、次のtickで新しいターゲットが選ばれるようにする
                         currentTarget = null
                     }
@@ -6,6 +6,7 @@ import net.minecraft.block.BlockState
 import net.minecraft.util.math.BlockPos
 import org.infinite.InfiniteClient
 import org.infinite.libs.ai.interfaces.AiAction
+import org.infinite.libs.ai.pathing.PathBackend
 
 // SingleBlockSchematicのimportが必要
 
@@ -80,13 +81,7 @@ class PlaceBlockAction(
         currentTarget = nearestBlock
     }
 
-    fun baritoneCheck(): Boolean =
-        try {
-            Class.forName("baritone.api.BaritoneAPI")
-            true
-        } catch (_: ClassNotFoundException) {
-            false
-        }
+    fun baritoneCheck(): Boolean = PathBackend.Baritone.isAvailable
 
     override fun state(): AiActionState =
         if (!baritoneCheck()) {
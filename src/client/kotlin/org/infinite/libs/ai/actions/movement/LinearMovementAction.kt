@@ -7,6 +7,7 @@ import net.minecraft.util.math.Vec3d
 import net.minecraft.world.BlockView
 import org.infinite.libs.ai.interfaces.AiAction
 import org.infinite.libs.client.control.ControllerInterface
+import java.util.EnumSet
 import kotlin.math.abs
 import kotlin.math.atan2
 
@@ -31,6 +32,9 @@ class LinearMovementAction(
     private var originalAutoJump: Boolean = false
     // ----------------------------------------
 
+    // 移動キーと視点だけを使うため、ブロック操作やインベントリ操作のアクションとは並行して実行できる
+    override val lanes: Set<Lane> = EnumSet.of(Lane.Movement, Lane.Look)
+
     override fun onFailure() {
         // 終了時にAuto Jumpを元の状態に戻す
         options.autoJump.value = originalAutoJump
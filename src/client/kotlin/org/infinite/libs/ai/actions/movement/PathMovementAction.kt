@@ -4,8 +4,14 @@ import baritone.api.BaritoneAPI
 import net.minecraft.client.MinecraftClient
 import net.minecraft.client.network.ClientPlayerEntity
 import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Vec3d
 import org.infinite.InfiniteClient
+import org.infinite.libs.ai.AiInterface
 import org.infinite.libs.ai.interfaces.AiAction
+import org.infinite.libs.ai.pathing.AStarPathPlanner
+import org.infinite.libs.ai.pathing.PathBackend
+import org.infinite.libs.ai.pathing.PathGoal
+import org.infinite.libs.ai.pathing.PlannedPath
 import org.infinite.libs.client.aim.AimInterface
 import org.infinite.libs.client.aim.camera.CameraRoll
 import org.infinite.libs.client.aim.task.AimTask
@@ -13,7 +19,10 @@ import org.infinite.libs.client.aim.task.condition.AimTaskConditionByFrame
 import org.infinite.libs.client.aim.task.config.AimCalculateMethod
 import org.infinite.libs.client.aim.task.config.AimPriority
 import org.infinite.libs.client.aim.task.config.AimTarget
+import org.infinite.libs.client.control.ControllerInterface
 import org.infinite.utils.toRadians
+import java.util.EnumSet
+import java.util.concurrent.CompletableFuture
 import kotlin.math.abs
 import kotlin.math.atan2
 
@@ -26,7 +35,26 @@ class PathMovementAction(
     val stateRegister: () -> AiActionState? = { null },
     val onFailureAction: () -> Unit = {},
     val onSuccessAction: () -> Unit = {},
+    backend: PathBackend? = null,
 ) : AiAction() {
+    /**
+     * 経路探索に使うバックエンド。指定しない場合は [PathBackend.select] で選ぶ。
+     * 実行中に変わることはありません。[PathBackend.AStar] で経路が見つからない場合、このアクションは失敗し、
+     * Baritoneがあれば代わりに [PathBackend.Baritone] を使う同じ移動のアクションをキューに追加します
+     */
+    val backend: PathBackend = backend ?: PathBackend.select(player?.blockPos, BlockPos(x, y ?: 0, z))
+
+    // Baritone以外のバックエンドでは、求めた経路の経由地を順に辿る
+    private val followsWaypoints: Boolean = this.backend != PathBackend.Baritone
+
+    // 経由地を辿る場合は移動キーと視点だけを使うため、ブロック操作やインベントリ操作とは並行して実行できる。
+    // 並行して実行中のアクションを追い越さないよう、レーンはアクションの実行中に変えない
+    override val lanes: Set<Lane> = if (followsWaypoints) WAYPOINT_LANES else ALL_LANES
+
+    // 経由地を辿るバックエンドの目的地。radius が null の場合はちょうどその位置で、
+    // 固体のブロック (鉱石など) で立ち入れない場合だけ、隣接する位置を目的地とする (経路の要求時に決める)
+    private var pathGoal = PathGoal(x, y, z, radius, height)
+
     // --- 1. 目標角度の定義 (移動方向) ---
     class MovementRoll : AimTarget.RollTarget(CameraRoll.Zero) {
         val client: MinecraftClient
@@ -61,7 +89,75 @@ class PathMovementAction(
 
     var registered = false
 
+    // --- 経由地を辿るバックエンド用の状態 ---
+    private var path: PlannedPath? = null
+    private var waypointIndex = 0
+    private var pathRequest: CompletableFuture<PlannedPath>? = null
+    private var follower: LinearMovementAction? = null
+    private var pathFailed = false
+
+    override fun plan(): CompletableFuture<*>? {
+        if (!followsWaypoints) return null
+        return requestPath()
+    }
+
+    // 現在位置から目的地までの経路を要求する。結果はメインスレッドで反映される
+    private fun requestPath(): CompletableFuture<*>? {
+        val currentWorld = world ?: return null
+        val from = player?.blockPos ?: return null
+        if (radius == null && y != null) {
+            val target = BlockPos(x, y, z)
+            val solid = !currentWorld.getBlockState(target).getCollisionShape(currentWorld, target).isEmpty
+            pathGoal = PathGoal(x, y, z, null, height, adjacent = solid)
+        }
+        val request = AStarPathPlanner.findPath(currentWorld, from, pathGoal)
+        pathRequest = request
+        val planned =
+            request.handle { result, error ->
+                // キャンセルされた探索の結果は、取り除かれたアクションに反映しない
+                if (request.isCancelled) return@handle
+                if (error != null || result == null) {
+                    fallbackOrFail()
+                } else {
+                    path = result
+                    waypointIndex = 0
+                }
+            }
+        // AiInterfaceがキャンセルするのは返した Future なので、経路探索そのものにもキャンセルを伝える
+        planned.whenComplete { _, _ -> if (planned.isCancelled) request.cancel(false) }
+        return planned
+    }
+
+    // 経由地を辿れなかった場合は失敗とする。Baritoneへの切り替えは onFailure で別のアクションとして行う
+    private fun fallbackOrFail() {
+        follower?.onFailure()
+        follower = null
+        ControllerInterface.release(options.forwardKey)
+        ControllerInterface.release(options.jumpKey)
+        pathFailed = true
+    }
+
+    // 内蔵のA*で辿れなかった移動を、Baritoneで行う同じ移動のアクション。コールバックも引き継ぐ
+    private fun baritoneFallback(): PathMovementAction? {
+        if (!pathFailed || backend != PathBackend.AStar || !PathBackend.Baritone.isAvailable) return null
+        return PathMovementAction(
+            x,
+            y,
+            z,
+            radius,
+            height,
+            stateRegister,
+            onFailureAction,
+            onSuccessAction,
+            PathBackend.Baritone,
+        )
+    }
+
     override fun tick() {
+        if (followsWaypoints) {
+            followPath()
+            return
+        }
         if (!baritoneCheck()) return
         if (registered) {
             handleAim()
@@ -81,21 +177,73 @@ class PathMovementAction(
         AimInterface.addTask(AimTask(AimPriority.Normally, target, condition, AimCalculateMethod.EaseInOut))
     }
 
+    // 経路上の次の地点へ、LinearMovementActionを使って順に移動する
+    private fun followPath() {
+        if (pathRequest?.isDone == false) return
+        val currentPath = path ?: return
+        if (currentPath.invalidated) {
+            // 経路上のブロックが更新されたので、現在位置から探索し直す
+            follower?.onFailure()
+            follower = null
+            path = null
+            requestPath()
+            return
+        }
+        val current = follower
+        if (current != null) {
+            when (current.state()) {
+                AiActionState.Progress -> {
+                    current.tick()
+                    return
+                }
+
+                AiActionState.Success -> {
+                    current.onSuccess()
+                    waypointIndex++
+                }
+
+                AiActionState.Failure -> {
+                    fallbackOrFail()
+                    return
+                }
+            }
+            follower = null
+        }
+        val waypoints = currentPath.waypoints
+        if (waypointIndex < waypoints.size) {
+            val waypoint = waypoints[waypointIndex]
+            // 最後の経由地では、そのブロックの中まで入る
+            val range = if (waypointIndex == waypoints.lastIndex) 0.5 else 1.0
+            follower = LinearMovementAction(Vec3d.ofBottomCenter(waypoint), movementRange = range)
+        } else if (!currentPath.finished) {
+            // 途中までの経路を辿り終えたので、続きを探索する
+            requestPath()
+        }
+    }
+
     val pos: BlockPos
         get() = player!!.blockPos
 
-    fun baritoneCheck(): Boolean =
-        try {
-            Class.forName("baritone.api.BaritoneAPI")
-            true
-        } catch (_: ClassNotFoundException) {
-            false
-        }
+    fun baritoneCheck(): Boolean = PathBackend.Baritone.isAvailable
 
     var goal: Any? = null
 
     override fun state(): AiActionState =
-        if (!baritoneCheck()) {
+        if (followsWaypoints) {
+            stateRegister() ?: run {
+                val currentPath = path
+                when {
+                    player?.blockPos?.let { pathGoal.isInGoal(it.x, it.y, it.z) } == true -> AiActionState.Success
+                    pathFailed -> AiActionState.Failure
+                    currentPath != null &&
+                        currentPath.finished &&
+                        waypointIndex >= currentPath.waypoints.size &&
+                        follower == null -> AiActionState.Failure
+
+                    else -> AiActionState.Progress
+                }
+            }
+        } else if (!baritoneCheck()) {
             InfiniteClient.error("You have to import Baritone for this Feature!")
             AiActionState.Failure
         } else {
@@ -118,13 +266,29 @@ class PathMovementAction(
         }
 
     private fun cancelTask() {
-        if (baritoneCheck()) {
+        if (followsWaypoints) {
+            pathRequest?.cancel(false)
+            follower?.onFailure()
+            follower = null
+            ControllerInterface.release(options.forwardKey)
+            ControllerInterface.release(options.jumpKey)
+        } else if (baritoneCheck()) {
             baritone.pathingBehavior.cancelEverything()
         }
     }
 
+    companion object {
+        private val WAYPOINT_LANES: Set<AiAction.Lane> = EnumSet.of(AiAction.Lane.Movement, AiAction.Lane.Look)
+    }
+
     override fun onFailure() {
         cancelTask()
+        val fallback = baritoneFallback()
+        if (fallback != null) {
+            // 全レーンを使うBaritoneの移動は新しいアクションとして追加し、並行して実行中のアクションが終わるのを待たせる
+            AiInterface.add(fallback)
+            return
+        }
         onFailureAction()
     }
 
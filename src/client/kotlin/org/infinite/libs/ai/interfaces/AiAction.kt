@@ -1,6 +1,10 @@
 package org.infinite.libs.ai.interfaces
 
+import net.minecraft.util.math.BlockBox
 import org.infinite.libs.client.player.ClientInterface
+import org.infinite.libs.world.WorldSnapshot
+import java.util.EnumSet
+import java.util.concurrent.CompletableFuture
 
 open class AiAction : ClientInterface() {
     enum class AiActionState {
@@ -9,6 +13,50 @@ open class AiAction : ClientInterface() {
         Failure,
     }
 
+    /**
+     * アクションが占有する操作の系統 (レーン)。
+     * AiInterfaceは、キュー内でより前にあるアクションと占有するレーンが重ならないアクションを同じティックに並行して実行します。
+     */
+    enum class Lane {
+        Movement, // 移動キー・経路探索による移動
+        Interaction, // ブロックの破壊・設置、エンティティへの操作
+        Inventory, // ホットバーの選択・インベントリの操作
+        Look, // 視点の操作
+    }
+
+    /**
+     * このアクションが占有するレーン。既定ではすべてのレーンを占有し、前後のアクションと順番に実行されます。
+     * 一部の操作しか行わないアクションは、必要なレーンだけを返すことで他のアクションと並行して実行できます。
+     */
+    open val lanes: Set<Lane>
+        get() = ALL_LANES
+
+    // AiInterfaceが管理する計画フェーズの状態。null の間はまだ計画を開始していない
+    internal var planning: CompletableFuture<*>? = null
+
+    /**
+     * 実行前の計画フェーズを開始し、計画の完了を表す Future を返します。計画が不要なアクションは null を返します (既定)。
+     *
+     * アクションが実行可能になったとき (先に並ぶアクションとレーンが重ならなくなったとき) に一度だけメインスレッドから呼び出されます。
+     * AiInterfaceは Future が完了するまで [state] と [tick] を呼び出さず、
+     * 完了前にアクションが取り除かれた場合は Future をキャンセルします。Future が例外で完了した場合は失敗として扱います。
+     * 通常は [planOnSnapshot] を使って実装します。
+     */
+    open fun plan(): CompletableFuture<*>? = null
+
+    /**
+     * [bounds] のスナップショットに対して [compute] をワーカースレッドで実行し、その結果をメインスレッドで [apply] に渡します。
+     * [plan] の実装から呼び出すためのヘルパーです。
+     */
+    protected fun <T> planOnSnapshot(
+        bounds: BlockBox,
+        compute: (WorldSnapshot) -> T,
+        apply: (T) -> Unit,
+    ): CompletableFuture<*>? {
+        val currentWorld = world ?: return null
+        return WorldSnapshot.query(currentWorld, bounds, compute, apply)
+    }
+
     open fun state(): AiActionState = AiActionState.Success
 
     open fun tick() {}
@@ -16,4 +64,8 @@ open class AiAction : ClientInterface() {
     open fun onSuccess() {}
 
     open fun onFailure() {}
+
+    companion object {
+        val ALL_LANES: Set<Lane> = EnumSet.allOf(Lane::class.java)
+    }
 }
@@ -0,0 +1,323 @@
+package org.infinite.libs.ai.pathing
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.minecraft.util.math.BlockBox
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Direction
+import net.minecraft.world.World
+import org.infinite.libs.world.WorldSnapshot
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.math.abs
+import kotlin.math.floor
+import kotlin.math.max
+
+/**
+ * Baritoneを使わない、近距離の歩行用の経路探索 (A*)。
+ *
+ * 出発点と目的地を囲む範囲の [WorldSnapshot] から [WalkabilityGrid] を作り、ワーカースレッドで探索します。
+ * 座標は [BlockPos.asLong] の `long` のまま、二分ヒープの優先度付きキューとプリミティブ型のマップで扱います。
+ * 移動は水平8方向 (斜めは角を削らない場合のみ)、1ブロックの段差の上り、[MAX_FALL] ブロックまでの下りです。
+ * 見つかった経路は、同じ高さで一直線に歩ける区間をまとめて経由地を減らします。
+ *
+ * 探索済みの経路は一定数まで保持し、[org.infinite.libs.world.WorldManager] から経路上のブロックの更新を受け取ると
+ * [PlannedPath.invalidated] を立てます。呼び出し側はそれを見て、現在位置から探索し直してください。
+ * 再探索のスナップショットは変更のないチャンクの複製を共有するため、作り直す費用は更新のあったチャンクの分だけです。
+ */
+object AStarPathPlanner {
+    /** 1回の探索で扱う水平距離 (ブロック)。これより遠い目的地へは、途中までの経路を繰り返し求めて近づく */
+    const val MAX_DISTANCE = 48
+
+    // 探索範囲として、出発点と目的地を囲む範囲に加える余白
+    private const val HORIZONTAL_MARGIN = 16
+    private const val VERTICAL_MARGIN = 8
+
+    // 1回の探索で展開するノードの上限
+    private const val MAX_NODES = 50_000
+
+    private const val MAX_FALL = 3
+    private const val DIAGONAL_COST = 1.4142135623730951
+    private const val JUMP_COST = 0.5
+    private const val FALL_COST = 0.25
+    private const val SLOW_MULTIPLIER = 3.0
+
+    // この数 (2の累乗) のノードを展開するごとにキャンセルを確認する
+    private const val CANCEL_CHECK_MASK = 1024 - 1
+
+    // ブロックの更新を監視する経路の最大数
+    private const val MAX_TRACKED_PATHS = 8
+
+    private val HORIZONTAL = arrayOf(intArrayOf(1, 0), intArrayOf(-1, 0), intArrayOf(0, 1), intArrayOf(0, -1))
+    private val DIAGONAL = arrayOf(intArrayOf(1, 1), intArrayOf(1, -1), intArrayOf(-1, 1), intArrayOf(-1, -1))
+
+    // ブロックの更新を監視している経路 (メインスレッドからのみアクセス)
+    private val trackedPaths = ArrayDeque<PlannedPath>()
+
+    /**
+     * [from] から [goal] への経路を求めます。メインスレッドから呼び出してください。
+     * 返された Future はメインスレッドで完了し、経路が見つからない場合は例外で完了します。
+     * 目的地に届かない場合は、最も近づける位置までの経路 ([PlannedPath.finished] が false) を返します。
+     * 返された Future をキャンセルすると、ワーカースレッドでの探索も打ち切ります。
+     */
+    fun findPath(
+        world: World,
+        from: BlockPos,
+        goal: PathGoal,
+    ): CompletableFuture<PlannedPath> {
+        // 遠い目的地は MAX_DISTANCE までの範囲で探索し、最も近づける位置までの経路を返す
+        val goalX = goal.x.coerceIn(from.x - MAX_DISTANCE, from.x + MAX_DISTANCE)
+        val goalY = goal.y ?: from.y
+        val goalZ = goal.z.coerceIn(from.z - MAX_DISTANCE, from.z + MAX_DISTANCE)
+        val bounds =
+            BlockBox(
+                minOf(from.x, goalX) - HORIZONTAL_MARGIN,
+                minOf(from.y, goalY) - VERTICAL_MARGIN,
+                minOf(from.z, goalZ) - HORIZONTAL_MARGIN,
+                maxOf(from.x, goalX) + HORIZONTAL_MARGIN,
+                maxOf(from.y, goalY) + VERTICAL_MARGIN,
+                maxOf(from.z, goalZ) + HORIZONTAL_MARGIN,
+            )
+        val cancelled = AtomicBoolean()
+        val future =
+            WorldSnapshot
+                .supply(world, bounds) { snapshot -> search(WalkabilityGrid(snapshot), from, goal) { cancelled.get() } }
+                .thenApply { path ->
+                    if (trackedPaths.size >= MAX_TRACKED_PATHS) trackedPaths.removeFirst()
+                    trackedPaths.addLast(path)
+                    path
+                }
+        future.whenComplete { _, _ -> if (future.isCancelled) cancelled.set(true) }
+        return future
+    }
+
+    /**
+     * ブロックが更新されたときに [org.infinite.libs.world.WorldManager] から呼び出されます。
+     * 更新されたブロックを足元・頭・足場として使う経路を無効にします。
+     */
+    fun onBlockUpdate(pos: BlockPos) {
+        if (trackedPaths.isEmpty()) return
+        val key = pos.asLong()
+        val above = BlockPos.offset(key, Direction.UP)
+        val below = BlockPos.offset(key, Direction.DOWN)
+        trackedPaths.removeIf { path ->
+            val affected = key in path.cells || above in path.cells || below in path.cells
+            if (affected) path.invalidated = true
+            affected
+        }
+    }
+
+    fun clear() {
+        trackedPaths.clear()
+    }
+
+    /**
+     * [grid] 上で A* 探索を行います (ワーカースレッドから呼び出されます)。
+     * [isCancelled] が true を返した時点で探索を打ち切り、[CancellationException] を投げます。
+     */
+    internal fun search(
+        grid: WalkabilityGrid,
+        from: BlockPos,
+        goal: PathGoal,
+        isCancelled: () -> Boolean = { false },
+    ): PlannedPath {
+        val target = BlockPos(goal.x, goal.y ?: from.y, goal.z)
+        val start = from.asLong()
+        val open = LongMinHeap()
+        val gScore = Long2DoubleOpenHashMap().apply { defaultReturnValue(Double.MAX_VALUE) }
+        val parent = Long2LongOpenHashMap()
+        val closed = LongOpenHashSet()
+
+        gScore.put(start, 0.0)
+        open.push(start, goal.heuristic(from.x, from.y, from.z))
+        var best = start
+        var bestHeuristic = goal.heuristic(from.x, from.y, from.z)
+        var reached = false
+
+        while (!open.isEmpty() && closed.size < MAX_NODES) {
+            val current = open.pop()
+            if (!closed.add(current)) continue
+            if ((closed.size and CANCEL_CHECK_MASK) == 0 && isCancelled()) throw CancellationException()
+            val x = BlockPos.unpackLongX(current)
+            val y = BlockPos.unpackLongY(current)
+            val z = BlockPos.unpackLongZ(current)
+            if (goal.isInGoal(x, y, z)) {
+                best = current
+                reached = true
+                break
+            }
+            val heuristic = goal.heuristic(x, y, z)
+            if (heuristic < bestHeuristic) {
+                bestHeuristic = heuristic
+                best = current
+            }
+            val currentScore = gScore.get(current)
+            expand(grid, x, y, z) { nx, ny, nz, cost ->
+                val neighbor = BlockPos.asLong(nx, ny, nz)
+                if (neighbor in closed) return@expand
+                val score = currentScore + cost
+                if (score < gScore.get(neighbor)) {
+                    gScore.put(neighbor, score)
+                    parent.put(neighbor, current)
+                    open.push(neighbor, score + goal.heuristic(nx, ny, nz))
+                }
+            }
+        }
+        if (best == start && !reached) throw IllegalStateException("No path found to $target")
+
+        val raw = ArrayList<BlockPos>()
+        var node = best
+        while (node != start) {
+            raw.add(BlockPos.fromLong(node))
+            node = parent.get(node)
+        }
+        raw.add(from)
+        raw.reverse()
+        val cells = LongOpenHashSet(raw.size).apply { raw.forEach { add(it.asLong()) } }
+        return PlannedPath(target, smooth(grid, raw), reached, cells)
+    }
+
+    // (x, y, z) から移動できる位置とその費用を列挙する
+    private inline fun expand(
+        grid: WalkabilityGrid,
+        x: Int,
+        y: Int,
+        z: Int,
+        visit: (Int, Int, Int, Double) -> Unit,
+    ) {
+        for (offset in HORIZONTAL) {
+            val nx = x + offset[0]
+            val nz = z + offset[1]
+            if (grid.isStandable(nx, y, nz)) {
+                visit(nx, y, nz, cost(grid, nx, y, nz, 1.0))
+            } else if (grid.isStandable(nx, y + 1, nz) && grid.isPassable(x, y + 2, z)) {
+                // 1ブロックの段差をジャンプで上る (頭上に空間が必要)
+                visit(nx, y + 1, nz, cost(grid, nx, y + 1, nz, 1.0 + JUMP_COST))
+            } else if (grid.isPassable(nx, y, nz) && grid.isPassable(nx, y + 1, nz)) {
+                // 段差を下りる
+                for (fall in 1..MAX_FALL) {
+                    if (grid.isStandable(nx, y - fall, nz)) {
+                        visit(nx, y - fall, nz, cost(grid, nx, y - fall, nz, 1.0 + FALL_COST * fall))
+                        break
+                    }
+                    if (!grid.isPassable(nx, y - fall, nz)) break
+                }
+            }
+        }
+        for (offset in DIAGONAL) {
+            val nx = x + offset[0]
+            val nz = z + offset[1]
+            // 角を削らないよう、両側の通路が空いている場合だけ斜めに進む
+            if (!grid.isStandable(nx, y, nz)) continue
+            if (!isClear(grid, nx, y, z) || !isClear(grid, x, y, nz)) continue
+            visit(nx, y, nz, cost(grid, nx, y, nz, DIAGONAL_COST))
+        }
+    }
+
+    private fun isClear(
+        grid: WalkabilityGrid,
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean = grid.isPassable(x, y, z) && grid.isPassable(x, y + 1, z)
+
+    private fun cost(
+        grid: WalkabilityGrid,
+        x: Int,
+        y: Int,
+        z: Int,
+        base: Double,
+    ): Double = if (grid.isSlow(x, y, z)) base * SLOW_MULTIPLIER else base
+
+    // 同じ高さで一直線に歩ける区間をまとめ、経由地を減らす (出発点自体は含めない)
+    private fun smooth(
+        grid: WalkabilityGrid,
+        raw: List<BlockPos>,
+    ): List<BlockPos> {
+        if (raw.size <= 2) return raw.drop(1)
+        val result = ArrayList<BlockPos>()
+        var anchor = 0
+        while (anchor < raw.size - 1) {
+            var next = anchor + 1
+            while (next + 1 < raw.size && isStraightWalkable(grid, raw[anchor], raw[next + 1])) {
+                next++
+            }
+            result.add(raw[next])
+            anchor = next
+        }
+        return result
+    }
+
+    // from から to まで、同じ高さのまま一直線に歩けるか
+    private fun isStraightWalkable(
+        grid: WalkabilityGrid,
+        from: BlockPos,
+        to: BlockPos,
+    ): Boolean {
+        if (from.y != to.y) return false
+        val dx = (to.x - from.x).toDouble()
+        val dz = (to.z - from.z).toDouble()
+        val steps = max(abs(dx), abs(dz)).toInt() * 4
+        if (steps == 0) return true
+        for (step in 1..steps) {
+            val t = step.toDouble() / steps
+            val x = floor(from.x + 0.5 + dx * t).toInt()
+            val z = floor(from.z + 0.5 + dz * t).toInt()
+            if (!grid.isStandable(x, from.y, z) || grid.isSlow(x, from.y, z)) return false
+        }
+        return true
+    }
+
+    /**
+     * `long` の要素と `double` の優先度を持つ二分ヒープ (最小値が先頭)。
+     * 同じ要素が複数回追加されることを許し、取り出した側で探索済みかどうかを確認します。
+     */
+    private class LongMinHeap {
+        private var elements = LongArray(256)
+        private var priorities = DoubleArray(256)
+        private var size = 0
+
+        fun isEmpty(): Boolean = size == 0
+
+        fun push(
+            element: Long,
+            priority: Double,
+        ) {
+            if (size == elements.size) {
+                elements = elements.copyOf(size * 2)
+                priorities = priorities.copyOf(size * 2)
+            }
+            var index = size++
+            while (index > 0) {
+                val parentIndex = (index - 1) ushr 1
+                if (priorities[parentIndex] <= priority) break
+                elements[index] = elements[parentIndex]
+                priorities[index] = priorities[parentIndex]
+                index = parentIndex
+            }
+            elements[index] = element
+            priorities[index] = priority
+        }
+
+        fun pop(): Long {
+            val top = elements[0]
+            val lastElement = elements[--size]
+            val lastPriority = priorities[size]
+            var index = 0
+            while (true) {
+                var child = index * 2 + 1
+                if (child >= size) break
+                if (child + 1 < size && priorities[child + 1] < priorities[child]) child++
+                if (priorities[child] >= lastPriority) break
+                elements[index] = elements[child]
+                priorities[index] = priorities[child]
+                index = child
+            }
+            elements[index] = lastElement
+            priorities[index] = lastPriority
+            return top
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.infinite.libs.ai.pathing
+
+import net.minecraft.util.math.BlockPos
+
+/**
+ * 移動系のアクションが経路探索に使うバックエンド。
+ */
+enum class PathBackend {
+    /** Baritone (MOD) の経路探索と移動。地形の破壊・設置を伴う移動にも対応する */
+    Baritone,
+
+    /** [AStarPathPlanner] による、近距離の歩行用の経路探索。ブロックの破壊・設置は行わない */
+    AStar,
+    ;
+
+    /**
+     * このバックエンドが使用できるか。クラスの検索は初回の参照時に一度だけ行います。
+     */
+    val isAvailable: Boolean by lazy {
+        when (this) {
+            Baritone -> {
+                try {
+                    Class.forName("baritone.api.BaritoneAPI")
+                    true
+                } catch (_: ClassNotFoundException) {
+                    false
+                }
+            }
+
+            AStar -> {
+                true
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * 歩いて移動するアクションのためのバックエンドを選びます。
+         * 近距離の移動には Baritone の起動を待たずに済む [AStar] を選び、それ以外は [Baritone] を選びます。
+         * Baritoneが無い場合は、距離に関わらず [AStar] を選びます。
+         */
+        fun select(
+            from: BlockPos?,
+            to: BlockPos,
+        ): PathBackend {
+            val distanceSq =
+                if (from == null) {
+                    Long.MAX_VALUE
+                } else {
+                    val dx = (to.x - from.x).toLong()
+                    val dz = (to.z - from.z).toLong()
+                    dx * dx + dz * dz
+                }
+            if (distanceSq <= AStarPathPlanner.MAX_DISTANCE.toLong() * AStarPathPlanner.MAX_DISTANCE) return AStar
+            if (!Baritone.isAvailable) return AStar
+            return Baritone
+        }
+    }
+}
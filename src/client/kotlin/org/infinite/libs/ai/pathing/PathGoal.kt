@@ -0,0 +1,51 @@
+package org.infinite.libs.ai.pathing
+
+import kotlin.math.abs
+import kotlin.math.sqrt
+
+/**
+ * 経路探索の目的地。Baritoneに依存しないため、どのバックエンドからも使用できます。
+ *
+ * @param y null の場合は高さを問わない
+ * @param radius 水平方向の許容範囲。null の場合はちょうどその位置
+ * @param height 垂直方向の許容範囲
+ * @param adjacent true の場合は、その位置ではなく水平方向に隣接する位置 (と真上) を目的地とする。
+ * 鉱石などの固体ブロックに近づく場合に使います
+ */
+class PathGoal(
+    val x: Int,
+    val y: Int? = null,
+    val z: Int,
+    val radius: Int? = 2,
+    val height: Int = 2,
+    val adjacent: Boolean = false,
+) {
+    fun isInGoal(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean {
+        val dx = abs(this.x - x)
+        val dz = abs(this.z - z)
+        val inY = if (this.y == null) true else abs(this.y - y) <= this.height
+        if (adjacent) {
+            return (dx + dz == 1 && inY) || (dx == 0 && dz == 0 && this.y != null && y == this.y + 1)
+        }
+        return dx <= (this.radius ?: 0) && inY && dz <= (this.radius ?: 0)
+    }
+
+    fun heuristic(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Double {
+        // 目標のY座標を決定。yがnullの場合は、現在のy座標を目標の中心として使用（水平方向の移動を優先）
+        val targetY = this.y ?: y
+        val dx = (this.x - x).toDouble()
+        val dy = (targetY - y).toDouble()
+        val dz = (this.z - z).toDouble()
+        // 3Dユークリッド距離 (隣接する位置が目的地の場合は、その分だけ短く見積もる)
+        val distance = sqrt(dx * dx + dy * dy + dz * dz)
+        return if (adjacent) (distance - 1.0).coerceAtLeast(0.0) else distance
+    }
+}
@@ -0,0 +1,25 @@
+package org.infinite.libs.ai.pathing
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.minecraft.util.math.BlockPos
+
+/**
+ * 経路探索の結果。
+ *
+ * @param goal 探索した目的地
+ * @param waypoints 通過する位置 (出発点側から順に)
+ * @param finished 目的地まで到達する経路であれば true。false の場合は途中までの経路
+ * @param cells 経路が通るブロック (BlockPos.asLong)。省略した場合は [waypoints] から作る
+ */
+class PlannedPath(
+    val goal: BlockPos,
+    val waypoints: List<BlockPos>,
+    val finished: Boolean,
+    val cells: LongOpenHashSet = LongOpenHashSet(waypoints.size).apply { waypoints.forEach { add(it.asLong()) } },
+) {
+    /**
+     * 経路上のブロックが更新され、経路を辿れなくなった可能性がある場合に true になります (メインスレッドから更新)。
+     */
+    var invalidated = false
+        internal set
+}
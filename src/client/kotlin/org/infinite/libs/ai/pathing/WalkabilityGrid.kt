@@ -0,0 +1,169 @@
+package org.infinite.libs.ai.pathing
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import net.minecraft.block.BlockState
+import net.minecraft.block.Blocks
+import net.minecraft.registry.tag.BlockTags
+import net.minecraft.registry.tag.FluidTags
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.ChunkSectionPos
+import net.minecraft.util.math.Direction
+import net.minecraft.world.EmptyBlockView
+import org.infinite.libs.world.WorldSnapshot
+import java.util.IdentityHashMap
+
+/**
+ * [WorldSnapshot] から作る、経路探索用の歩行可能性のグリッド。
+ *
+ * ブロックの当たり判定から「通り抜けられる」「上に立てる」「移動が遅くなる」「水中」の4種類のフラグを求め、
+ * セクション (16x16x16) ごとに `long` のビットマップ (1セクションあたり 4 x 512 バイト) として保持します。
+ * セクションは最初に参照されたときに作られ、以降の問い合わせはビット演算だけで済みます。
+ *
+ * スナップショットと同様にどのスレッドからでも使えますが、インスタンスはスレッドセーフではありません。
+ *
+ * @param bounds 問い合わせられる範囲。範囲外は通れないものとして扱う
+ * @param blockStates ブロックの取得元。ベンチマークでは合成した地形を渡す
+ */
+class WalkabilityGrid internal constructor(
+    private val bounds: (Int, Int, Int) -> Boolean,
+    private val blockStates: (Int, Int, Int) -> BlockState,
+) {
+    constructor(snapshot: WorldSnapshot) : this(
+        { x, y, z -> snapshot.contains(x, y, z) },
+        { x, y, z -> snapshot.getBlockState(x, y, z) },
+    )
+
+    private class Section {
+        val passable = LongArray(WORDS)
+        val floor = LongArray(WORDS)
+        val slow = LongArray(WORDS)
+        val water = LongArray(WORDS)
+    }
+
+    // ChunkSectionPos.asLong -> ビットマップ
+    private val sections = Long2ObjectOpenHashMap<Section>()
+
+    // BlockState -> フラグ。BlockStateは共有されたインスタンスなので、同一性で比較する
+    private val flagCache = IdentityHashMap<BlockState, Int>()
+
+    /** 当たり判定がなく (またはごく薄く)、危険でもないため、体が入れる */
+    fun isPassable(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean = test(x, y, z) { it.passable }
+
+    /** 上面に立てる */
+    fun isFloor(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean = test(x, y, z) { it.floor }
+
+    /** クモの巣や水など、通過に時間がかかる */
+    fun isSlow(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean = test(x, y, z) { it.slow }
+
+    /**
+     * 足元 ([x], [y], [z]) と頭の位置に体が入り、かつ足場がある (または水中にいる) 場合に true を返します。
+     */
+    fun isStandable(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean =
+        isPassable(x, y, z) &&
+            isPassable(x, y + 1, z) &&
+            (isFloor(x, y - 1, z) || test(x, y, z) { it.water })
+
+    fun contains(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean = bounds(x, y, z)
+
+    private inline fun test(
+        x: Int,
+        y: Int,
+        z: Int,
+        bits: (Section) -> LongArray,
+    ): Boolean {
+        if (!bounds(x, y, z)) return false
+        val index = ((y and 15) shl 8) or ((z and 15) shl 4) or (x and 15)
+        val words = bits(section(x shr 4, y shr 4, z shr 4))
+        return (words[index ushr 6] and (1L shl (index and 63))) != 0L
+    }
+
+    private fun section(
+        sectionX: Int,
+        sectionY: Int,
+        sectionZ: Int,
+    ): Section {
+        val key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ)
+        return sections.get(key) ?: build(sectionX, sectionY, sectionZ).also { sections.put(key, it) }
+    }
+
+    private fun build(
+        sectionX: Int,
+        sectionY: Int,
+        sectionZ: Int,
+    ): Section {
+        val section = Section()
+        val baseX = sectionX shl 4
+        val baseY = sectionY shl 4
+        val baseZ = sectionZ shl 4
+        for (index in 0 until 4096) {
+            val state = blockStates(baseX + (index and 15), baseY + (index ushr 8), baseZ + ((index ushr 4) and 15))
+            val flags = flagCache.getOrPut(state) { classify(state) }
+            if (flags == 0) continue
+            val word = index ushr 6
+            val bit = 1L shl (index and 63)
+            if ((flags and PASSABLE) != 0) section.passable[word] = section.passable[word] or bit
+            if ((flags and FLOOR) != 0) section.floor[word] = section.floor[word] or bit
+            if ((flags and SLOW) != 0) section.slow[word] = section.slow[word] or bit
+            if ((flags and WATER) != 0) section.water[word] = section.water[word] or bit
+        }
+        return section
+    }
+
+    companion object {
+        private const val WORDS = 4096 / 64
+
+        private const val PASSABLE = 1
+        private const val FLOOR = 2
+        private const val SLOW = 4
+        private const val WATER = 8
+
+        // これ以下の高さの当たり判定 (カーペット、雪1層など) は通り抜けられるものとして扱う
+        private const val THIN_SHAPE_HEIGHT = 0.2
+
+        // 触れるとダメージを受ける、または抜け出せなくなるブロック
+        private val DANGEROUS =
+            setOf(
+                Blocks.CACTUS,
+                Blocks.MAGMA_BLOCK,
+                Blocks.SWEET_BERRY_BUSH,
+                Blocks.POWDER_SNOW,
+                Blocks.WITHER_ROSE,
+                Blocks.CAMPFIRE,
+                Blocks.SOUL_CAMPFIRE,
+            )
+
+        private fun classify(state: BlockState): Int {
+            val fluid = state.fluidState
+            if (fluid.isIn(FluidTags.LAVA) || state.isIn(BlockTags.FIRE) || state.block in DANGEROUS) return 0
+            val shape = state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN)
+            val top = if (shape.isEmpty) 0.0 else shape.getMax(Direction.Axis.Y)
+            var flags = 0
+            if (top <= THIN_SHAPE_HEIGHT) flags = flags or PASSABLE
+            // 柵や壁のように 1 ブロックより高いものには立てないものとして扱う
+            if (!shape.isEmpty && top in 0.5..1.0) flags = flags or FLOOR
+            if (fluid.isIn(FluidTags.WATER)) flags = flags or WATER or SLOW
+            if (state.isOf(Blocks.COBWEB)) flags = flags or SLOW
+            return flags
+        }
+    }
+}
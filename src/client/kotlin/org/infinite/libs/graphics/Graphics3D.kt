@@ -13,6 +13,7 @@ import net.minecraft.util.math.Vec3d
 import org.infinite.libs.client.aim.camera.CameraRoll
 import org.infinite.libs.graphics.render.RenderResources
 import org.infinite.libs.graphics.render.RenderUtils
+import org.infinite.libs.metrics.MetricsRegistry
 import org.infinite.utils.rendering.Line
 import org.infinite.utils.rendering.Quad
 import org.joml.Matrix4f
@@ -42,6 +43,7 @@ class Graphics3D(
 
     init {
         matrixStack.multiplyPositionMatrix(positionMatrix)
+        ScreenProjection.update(projectionMatrix, positionMatrix, camera)
     }
 
     // ----------------------------------------------------------------------
@@ -80,6 +82,7 @@ class Graphics3D(
         val buffer = immediate.getBuffer(layer)
 
         RenderUtils.renderLinedBox(matrixStack, box, color, buffer)
+        renderedVertices.add(LINED_BOX_VERTICES)
     }
 
     /**
@@ -92,6 +95,7 @@ class Graphics3D(
         val layer = RenderResources.renderLinedLayer(isOverDraw)
         val buffer = immediate.getBuffer(layer)
         RenderUtils.renderLinedColorBoxes(matrixStack, boxes, buffer)
+        renderedVertices.add(boxes.size * LINED_BOX_VERTICES)
     }
 
     /**
@@ -104,6 +108,7 @@ class Graphics3D(
         val layer = RenderResources.renderSolidLayer(isOverDraw)
         val buffer = immediate.getBuffer(layer)
         RenderUtils.renderSolidColorBoxes(matrixStack, boxes, buffer)
+        renderedVertices.add(boxes.size * SOLID_BOX_VERTICES)
     }
 
     fun renderSolidQuads(
@@ -113,6 +118,7 @@ class Graphics3D(
         val layer = RenderResources.renderSolidLayer(isOverDraw)
         val buffer = immediate.getBuffer(layer)
         RenderUtils.renderSolidQuads(matrixStack, quads, buffer)
+        renderedVertices.add(quads.size * QUAD_VERTICES)
     }
 
     fun renderLinedLines(
@@ -122,6 +128,7 @@ class Graphics3D(
         val layer = RenderResources.renderLinedLayer(isOverDraw)
         val buffer = immediate.getBuffer(layer)
         RenderUtils.renderLinedLines(matrixStack, lines, buffer)
+        renderedVertices.add(lines.size * LINE_VERTICES)
     }
 
     /**
@@ -136,6 +143,7 @@ class Graphics3D(
         val layer = RenderResources.renderLinedLayer(isOverDraw)
         val buffer = immediate.getBuffer(layer)
         RenderUtils.renderLine(matrixStack, start, end, color, buffer)
+        renderedVertices.add(LINE_VERTICES)
     }
 
     /**
@@ -143,49 +151,16 @@ class Graphics3D(
      * ターゲットがカメラの後ろにある場合や、画面外にある場合は null を返します。
      */
     fun toDisplayPos(targetPos: Vec3d): Graphics2D.DisplayPos? {
-        val camera = this.camera
-        val window = client.window
-        // Graphics2Dが使用するのと同じスケーリングされた幅/高さを取得
-        val scaledWidth = window.scaledWidth.toDouble()
-        val scaledHeight = window.scaledHeight.toDouble()
-
-        // 1. ワールド座標から相対座標 (View Space) へ
-        val relX = (targetPos.x - camera.pos.x).toFloat()
-        val relY = (targetPos.y - camera.pos.y).toFloat()
-        val relZ = (targetPos.z - camera.pos.z).toFloat()
-
-        // 4Dベクトル (x, y, z, w=1.0)
-        val targetVector = Vector4f(relX, relY, relZ, 1.0f)
-
-        // 2. ビュープロジェクション行列を合成し、ベクトルを変換
-        val modelViewMatrix = matrixStack.peek().positionMatrix
-        val viewProjectionMatrix = Matrix4f(projectionMatrix).mul(modelViewMatrix)
-        targetVector.mul(viewProjectionMatrix)
-
-        // 3. W値による遠近補正 (Perspective Divide)
-        val w = targetVector.w
-
-        // w <= 0 は、カメラの後ろにあることを意味します
-        if (w <= 0.05f) {
+        // 投影はフレームごとに合成済みの行列を使う ScreenProjection に任せる
+        val out = projectionResult
+        if (!ScreenProjection.project(targetPos.x, targetPos.y, targetPos.z, out, 0)) {
             return null
         }
-
-        // NDC (Normalized Device Coordinates) への変換: [-1.0, 1.0]
-        val ndcX = targetVector.x / w
-        val ndcY = targetVector.y / w
-
-        // NDC範囲 [-1.0, 1.0] の外側にある場合は非表示
-        if (ndcX < -1.0f || ndcX > 1.0f || ndcY < -1.0f || ndcY > 1.0f) {
-            return null
-        }
-
-        // 4. NDCから画面座標 (ピクセル) への変換
-        val x = (ndcX + 1.0) * 0.5 * scaledWidth
-        val y = (1.0 - ndcY) * 0.5 * scaledHeight // Y軸を反転
-
-        return Graphics2D.DisplayPos(x, y)
+        return Graphics2D.DisplayPos(out[0].toDouble(), out[1].toDouble())
     }
 
+    private val projectionResult = FloatArray(2)
+
     private fun tracerOrigin(partialTicks: Float): Vec3d? {
         val yaw: Double = client.player?.getYaw(partialTicks)?.toDouble() ?: return null
         val pitch: Double = client.player?.getPitch(partialTicks)?.toDouble() ?: return null
@@ -210,9 +185,21 @@ class Graphics3D(
         val start = tracerOrigin(tickProgress) ?: return
         val offset: Vec3d = RenderUtils.cameraPos().negate()
         RenderUtils.renderLine(matrixStack, start, end.add(offset), color, buffer)
+        renderedVertices.add(LINE_VERTICES)
     }
 
     fun render() {
         immediate.draw()
     }
+
+    companion object {
+        // ESPなどの描画ヘルパーが生成した頂点数 (RenderUtilsの各関数が書き込む頂点数に対応)
+        private val renderedVertices =
+            MetricsRegistry.counter("infinite_render3d_vertices_total", "Vertices emitted by Graphics3D helpers such as ESP boxes")
+
+        private const val LINED_BOX_VERTICES = 24L
+        private const val SOLID_BOX_VERTICES = 36L
+        private const val QUAD_VERTICES = 6L
+        private const val LINE_VERTICES = 2L
+    }
 }
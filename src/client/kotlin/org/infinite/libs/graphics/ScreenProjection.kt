@@ -0,0 +1,131 @@
+package org.infinite.libs.graphics
+
+import net.minecraft.client.MinecraftClient
+import net.minecraft.client.render.Camera
+import org.joml.Matrix4f
+
+/**
+ * ワールド座標を画面座標 (Graphics2Dのスケーリング済み座標) に投影するための、フレーム単位のサービス。
+ * ビュープロジェクション行列はフレームごとに一度だけ合成され、投影自体はメモリ確保なしで行われます。
+ * render3dで投影した結果をrender2dで使用する機能 (HyperTag, LockOnなど) で共有します。
+ */
+object ScreenProjection {
+    private val viewProjection = Matrix4f()
+    private var cameraX = 0.0
+    private var cameraY = 0.0
+    private var cameraZ = 0.0
+    private var scaledWidth = 0.0
+    private var scaledHeight = 0.0
+
+    /**
+     * 現在のフレームの行列とカメラ位置を取り込みます。Graphics3Dの生成時にフレームごとに一度呼ばれます。
+     */
+    fun update(
+        projectionMatrix: Matrix4f,
+        positionMatrix: Matrix4f,
+        camera: Camera,
+    ) {
+        viewProjection.set(projectionMatrix).mul(positionMatrix)
+        val pos = camera.pos
+        cameraX = pos.x
+        cameraY = pos.y
+        cameraZ = pos.z
+        val window = MinecraftClient.getInstance().window
+        scaledWidth = window.scaledWidth.toDouble()
+        scaledHeight = window.scaledHeight.toDouble()
+    }
+
+    /**
+     * 1点を投影し、画面座標を [out] の [offset], [offset]+1 に書き込みます。
+     * ターゲットがカメラの後ろにある場合や、画面外にある場合は false を返します。
+     */
+    fun project(
+        x: Double,
+        y: Double,
+        z: Double,
+        out: FloatArray,
+        offset: Int,
+    ): Boolean {
+        // 1. ワールド座標から相対座標 (View Space) へ
+        val relX = (x - cameraX).toFloat()
+        val relY = (y - cameraY).toFloat()
+        val relZ = (z - cameraZ).toFloat()
+
+        // 2. ビュープロジェクション行列で変換 (Vector4fを生成せずに必要な成分のみ計算)
+        val m = viewProjection
+        val w = m.m03() * relX + m.m13() * relY + m.m23() * relZ + m.m33()
+
+        // w <= 0 は、カメラの後ろにあることを意味します
+        if (w <= 0.05f) {
+            return false
+        }
+
+        // 3. NDC (Normalized Device Coordinates) への変換: [-1.0, 1.0]
+        val ndcX = (m.m00() * relX + m.m10() * relY + m.m20() * relZ + m.m30()) / w
+        val ndcY = (m.m01() * relX + m.m11() * relY + m.m21() * relZ + m.m31()) / w
+
+        // NDC範囲 [-1.0, 1.0] の外側にある場合は非表示
+        if (ndcX < -1.0f || ndcX > 1.0f || ndcY < -1.0f || ndcY > 1.0f) {
+            return false
+        }
+
+        // 4. NDCから画面座標への変換 (Y軸を反転)
+        out[offset] = ((ndcX + 1.0) * 0.5 * scaledWidth).toFloat()
+        out[offset + 1] = ((1.0 - ndcY) * 0.5 * scaledHeight).toFloat()
+        return true
+    }
+
+    /**
+     * 複数のワールド座標をまとめて投影するための再利用可能なバッファ。
+     * フレームの最初に [clear] し、[add] で座標を登録してから [project] を呼び出します。
+     */
+    class Buffer(
+        initialCapacity: Int = 16,
+    ) {
+        private var positions = DoubleArray(initialCapacity * 3)
+        private var screen = FloatArray(initialCapacity * 2)
+        private var visible = BooleanArray(initialCapacity)
+
+        var size: Int = 0
+            private set
+
+        fun clear() {
+            size = 0
+        }
+
+        /**
+         * 投影する座標を追加し、そのインデックスを返します。
+         */
+        fun add(
+            x: Double,
+            y: Double,
+            z: Double,
+        ): Int {
+            if (size == visible.size) {
+                val capacity = (visible.size * 2).coerceAtLeast(16)
+                positions = positions.copyOf(capacity * 3)
+                screen = screen.copyOf(capacity * 2)
+                visible = visible.copyOf(capacity)
+            }
+            positions[size * 3] = x
+            positions[size * 3 + 1] = y
+            positions[size * 3 + 2] = z
+            return size++
+        }
+
+        /**
+         * 登録されたすべての座標を現在のフレームの行列で投影します。
+         */
+        fun project() {
+            for (i in 0 until size) {
+                visible[i] = ScreenProjection.project(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2], screen, i * 2)
+            }
+        }
+
+        fun isVisible(index: Int): Boolean = visible[index]
+
+        fun screenX(index: Int): Float = screen[index * 2]
+
+        fun screenY(index: Int): Float = screen[index * 2 + 1]
+    }
+}
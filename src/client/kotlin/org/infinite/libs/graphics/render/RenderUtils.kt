@@ -135,9 +135,27 @@ object RenderUtils {
         boxes: List<ColorBox>,
         buffer: VertexConsumer,
     ) {
-        val camPos = cameraPos().negate()
-        boxes.forEach {
-            renderSolidBox(matrix, it.box.offset(camPos), it.color, buffer)
+        if (boxes.isEmpty()) return
+        val camPos = cameraPos()
+        val entry = matrix.peek()
+        // 法線は全ての箱で共通なので、バッチごとに一度だけ変換する
+        val normals = transformedNormals(entry, SOLID_FACE_NORMALS)
+        val corners = FloatArray(24)
+        val work = Vector3f()
+        for (colorBox in boxes) {
+            transformCorners(entry, colorBox.box, camPos, corners, work)
+            val color = colorBox.color
+            for (face in 0 until 6) {
+                val nx = normals[face * 3]
+                val ny = normals[face * 3 + 1]
+                val nz = normals[face * 3 + 2]
+                val base = face * 4
+                // 三角形 1 (V1, V2, V3), 三角形 2 (V3, V4, V1)
+                for (i in SOLID_QUAD_ORDER) {
+                    val c = SOLID_FACE_CORNERS[base + i] * 3
+                    buffer.vertex(corners[c], corners[c + 1], corners[c + 2]).color(color).normal(nx, ny, nz)
+                }
+            }
         }
     }
 
@@ -207,8 +225,102 @@ object RenderUtils {
         boxes: List<ColorBox>,
         buffer: VertexConsumer, // Graphics3Dから渡される
     ) {
-        val camPos = cameraPos().negate()
-        boxes.forEach { renderLinedBox(matrix, it.box.offset(camPos), it.color, buffer) }
+        if (boxes.isEmpty()) return
+        val camPos = cameraPos()
+        val entry = matrix.peek()
+        // 法線は全ての箱で共通なので、バッチごとに一度だけ変換する
+        val normals = transformedNormals(entry, LINE_AXIS_NORMALS)
+        val corners = FloatArray(24)
+        val work = Vector3f()
+        for (colorBox in boxes) {
+            // 24頂点それぞれを行列変換する代わりに、8つの角だけを変換して辺の頂点に使い回す
+            transformCorners(entry, colorBox.box, camPos, corners, work)
+            val color = colorBox.color
+            for (edge in 0 until 12) {
+                val n = LINE_EDGE_AXES[edge] * 3
+                val nx = normals[n]
+                val ny = normals[n + 1]
+                val nz = normals[n + 2]
+                val a = LINE_EDGES[edge * 2] * 3
+                val b = LINE_EDGES[edge * 2 + 1] * 3
+                buffer.vertex(corners[a], corners[a + 1], corners[a + 2]).color(color).normal(nx, ny, nz)
+                buffer.vertex(corners[b], corners[b + 1], corners[b + 2]).color(color).normal(nx, ny, nz)
+            }
+        }
+    }
+
+    // --- 箱のバッチ描画用の定数 ---
+    // 角のインデックスは bit0: X(max), bit1: Y(max), bit2: Z(max) を表す
+
+    // 12本の辺 (始点の角, 終点の角)。renderLinedBox と同じ順序
+    private val LINE_EDGES =
+        intArrayOf(
+            0, 1, 0, 4, 1, 5, 4, 5, // bottom lines
+            2, 3, 2, 6, 3, 7, 6, 7, // top lines
+            0, 2, 1, 3, 4, 6, 5, 7, // side lines
+        )
+
+    // 各辺の法線に使う軸 (0: X, 1: Y, 2: Z)
+    private val LINE_EDGE_AXES = intArrayOf(0, 2, 2, 0, 0, 2, 2, 0, 1, 1, 1, 1)
+    private val LINE_AXIS_NORMALS = floatArrayOf(1f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f)
+
+    // 6面それぞれの4つの角。renderSolidBox と同じ順序 (Y-, Y+, Z-, X+, Z+, X-)
+    private val SOLID_FACE_CORNERS =
+        intArrayOf(
+            0, 1, 5, 4,
+            2, 6, 7, 3,
+            0, 2, 3, 1,
+            1, 3, 7, 5,
+            4, 6, 7, 5,
+            0, 4, 6, 2,
+        )
+    private val SOLID_FACE_NORMALS =
+        floatArrayOf(0f, -1f, 0f, 0f, 1f, 0f, 0f, 0f, -1f, 1f, 0f, 0f, 0f, 0f, 1f, -1f, 0f, 0f)
+    private val SOLID_QUAD_ORDER = intArrayOf(0, 1, 2, 2, 3, 0)
+
+    /**
+     * 箱の8つの角をカメラ相対座標に直し、行列で変換して [dest] (x, y, z の繰り返し) に書き込みます。
+     */
+    private fun transformCorners(
+        entry: MatrixStack.Entry,
+        box: Box,
+        camPos: Vec3d,
+        dest: FloatArray,
+        work: Vector3f,
+    ) {
+        val x1 = (box.minX - camPos.x).toFloat()
+        val y1 = (box.minY - camPos.y).toFloat()
+        val z1 = (box.minZ - camPos.z).toFloat()
+        val x2 = (box.maxX - camPos.x).toFloat()
+        val y2 = (box.maxY - camPos.y).toFloat()
+        val z2 = (box.maxZ - camPos.z).toFloat()
+        val positionMatrix = entry.positionMatrix
+        for (corner in 0 until 8) {
+            positionMatrix.transformPosition(
+                if ((corner and 1) != 0) x2 else x1,
+                if ((corner and 2) != 0) y2 else y1,
+                if ((corner and 4) != 0) z2 else z1,
+                work,
+            )
+            dest[corner * 3] = work.x
+            dest[corner * 3 + 1] = work.y
+            dest[corner * 3 + 2] = work.z
+        }
+    }
+
+    private fun transformedNormals(
+        entry: MatrixStack.Entry,
+        normals: FloatArray,
+    ): FloatArray {
+        val result = FloatArray(normals.size)
+        val work = Vector3f()
+        for (i in 0 until normals.size / 3) {
+            entry.transformNormal(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2], work)
+            result[i * 3] = work.x
+            result[i * 3 + 1] = work.y
+            result[i * 3 + 2] = work.z
+        }
+        return result
     }
 
     // 距離によるグラデーション色の計算 (変更なし)
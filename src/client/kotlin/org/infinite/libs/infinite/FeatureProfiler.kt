@@ -0,0 +1,189 @@
+package org.infinite.libs.infinite
+
+import net.fabricmc.loader.api.FabricLoader
+import org.infinite.ConfigurableFeature
+import org.infinite.InfiniteClient
+import org.infinite.featureCategories
+import org.infinite.libs.graphics.Graphics2D
+import org.infinite.libs.metrics.PrometheusWriter
+import java.io.File
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+
+/**
+ * InfiniteClientから呼び出される各Featureのフック (tick / render2d / render3d / handleChunk) の処理時間を計測します。
+ * 記録はFeatureごとに保持されるロックフリーのヒストグラムへの加算のみなので、常時有効のままでも負荷はごくわずかです。
+ */
+object FeatureProfiler {
+    enum class Hook {
+        Tick,
+        Render2d,
+        Render3d,
+        Chunk,
+    }
+
+    /**
+     * Featureごとの計測データ。ヒストグラムは実際に呼び出されたフックの分だけ生成されます。
+     */
+    class FeatureTimings {
+        private val histograms = arrayOfNulls<TimingHistogram>(Hook.entries.size)
+
+        fun record(
+            hook: Hook,
+            nanos: Long,
+        ) {
+            val histogram = histograms[hook.ordinal] ?: TimingHistogram().also { histograms[hook.ordinal] = it }
+            histogram.record(nanos)
+        }
+
+        fun get(hook: Hook): TimingHistogram? = histograms[hook.ordinal]
+    }
+
+    data class Row(
+        val feature: String,
+        val hook: Hook,
+        val snapshot: TimingHistogram.Snapshot,
+    )
+
+    // ローリングウィンドウの長さ (統計には直近1〜2ウィンドウ分が含まれる)
+    private const val WINDOW_NANOS = 5_000_000_000L
+    private const val OVERLAY_ROWS = 10
+
+    @Volatile
+    var enabled: Boolean = true
+
+    var overlayVisible: Boolean = false
+
+    private var windowStart = System.nanoTime()
+
+    internal inline fun measure(
+        feature: ConfigurableFeature,
+        hook: Hook,
+        block: () -> Unit,
+    ) {
+        if (!enabled) {
+            block()
+            return
+        }
+        val start = System.nanoTime()
+        try {
+            block()
+        } finally {
+            feature.timings.record(hook, System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * ティックの終わりに呼び出され、一定時間ごとにウィンドウを進めます。
+     */
+    fun tick() {
+        val now = System.nanoTime()
+        if (now - windowStart < WINDOW_NANOS) return
+        windowStart = now
+        forEachHistogram { _, _, histogram -> histogram.rotate() }
+    }
+
+    fun reset() {
+        forEachHistogram { _, _, histogram -> histogram.reset() }
+        windowStart = System.nanoTime()
+    }
+
+    /**
+     * 計測結果をp99の降順で返します。
+     */
+    fun report(): List<Row> {
+        val rows = mutableListOf<Row>()
+        forEachHistogram { name, hook, histogram ->
+            val snapshot = histogram.snapshot()
+            if (snapshot.count > 0) {
+                rows.add(Row(name, hook, snapshot))
+            }
+        }
+        return rows.sortedByDescending { it.snapshot.p99 }
+    }
+
+    /**
+     * 計測結果をCSVとして `infinite/profile` に書き出し、そのファイルを返します。
+     */
+    fun dumpCsv(): File {
+        val dir = FabricLoader.getInstance().gameDir.resolve("infinite").resolve("profile").toFile()
+        if (!dir.exists()) {
+            dir.mkdirs()
+        }
+        val timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+        val file = dir.resolve("profile-$timestamp.csv")
+        val csv = StringBuilder("feature,hook,count,p50_ns,p99_ns,max_ns\n")
+        for (row in report()) {
+            val s = row.snapshot
+            csv.append("${row.feature},${row.hook},${s.count},${s.p50},${s.p99},${s.max}\n")
+        }
+        file.writeText(csv.toString())
+        return file
+    }
+
+    /**
+     * 計測結果をメトリクスとして書き出します。[org.infinite.libs.metrics.MetricsRegistry] のコレクターとして登録されます。
+     */
+    fun writeMetrics(writer: PrometheusWriter) {
+        val rows = report()
+        if (rows.isEmpty()) return
+        writer.header("infinite_feature_hook_seconds", "Feature hook duration over the recent window", "gauge")
+        for (row in rows) {
+            val labels = PrometheusWriter.labels("feature" to row.feature, "hook" to row.hook.name)
+            val s = row.snapshot
+            writer.sample("infinite_feature_hook_seconds", PrometheusWriter.join(labels, "stat=\"p50\""), s.p50 / 1e9)
+            writer.sample("infinite_feature_hook_seconds", PrometheusWriter.join(labels, "stat=\"p99\""), s.p99 / 1e9)
+            writer.sample("infinite_feature_hook_seconds", PrometheusWriter.join(labels, "stat=\"max\""), s.max / 1e9)
+        }
+        writer.header("infinite_feature_hook_calls", "Feature hook invocations over the recent window", "gauge")
+        for (row in rows) {
+            val labels = PrometheusWriter.labels("feature" to row.feature, "hook" to row.hook.name)
+            writer.sample("infinite_feature_hook_calls", labels, row.snapshot.count)
+        }
+    }
+
+    /**
+     * p99の大きい順に上位のFeatureを画面右上に表示します。
+     */
+    fun render(graphics2D: Graphics2D) {
+        if (!overlayVisible) return
+        val rows = report().take(OVERLAY_ROWS)
+        val colors = InfiniteClient.theme().colors
+        val lines = mutableListOf("Feature / Hook      p50     p99     max")
+        rows.forEach {
+            val s = it.snapshot
+            lines.add("${it.feature}.${it.hook}  ${formatNanos(s.p50)}  ${formatNanos(s.p99)}  ${formatNanos(s.max)}")
+        }
+        val lineHeight = graphics2D.fontHeight() + 2
+        val boxWidth = (lines.maxOfOrNull { graphics2D.textWidth(it) } ?: 0) + 10
+        val boxHeight = lines.size * lineHeight + 6
+        val startX = graphics2D.width - boxWidth - 5
+        var currentY = 5
+        graphics2D.fill(startX, currentY, boxWidth, boxHeight, colors.backgroundColor)
+        graphics2D.drawBorder(startX, currentY, boxWidth, boxHeight, colors.primaryColor, 1)
+        currentY += 4
+        lines.forEachIndexed { index, line ->
+            graphics2D.drawText(line, startX + 5, currentY, if (index == 0) colors.primaryColor else colors.foregroundColor)
+            currentY += lineHeight
+        }
+    }
+
+    fun formatNanos(nanos: Long): String =
+        when {
+            nanos >= 1_000_000 -> "%.2fms".format(nanos / 1_000_000.0)
+            nanos >= 1_000 -> "%.1fus".format(nanos / 1_000.0)
+            else -> "${nanos}ns"
+        }
+
+    private inline fun forEachHistogram(action: (String, Hook, TimingHistogram) -> Unit) {
+        for (category in featureCategories) {
+            for (feature in category.features) {
+                val timings = feature.instance.timings
+                for (hook in Hook.entries) {
+                    val histogram = timings.get(hook) ?: continue
+                    action(feature.name, hook, histogram)
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.infinite.libs.infinite
 
 import com.mojang.brigadier.CommandDispatcher
+import com.mojang.brigadier.arguments.IntegerArgumentType
 import com.mojang.brigadier.arguments.StringArgumentType
 import com.mojang.brigadier.context.CommandContext
 import com.mojang.brigadier.suggestion.SuggestionProvider
@@ -17,6 +18,7 @@ import org.infinite.ConfigurableFeature
 import org.infinite.Feature
 import org.infinite.InfiniteClient
 import org.infinite.featureCategories
+import org.infinite.libs.metrics.MetricsExporter
 import org.infinite.settings.FeatureSetting
 
 object InfiniteCommand {
@@ -66,6 +68,35 @@ object InfiniteCommand {
                                         .executes { setTheme(it) },
                                 ),
                         ),
+                ).then(
+                    ClientCommandManager
+                        .literal("profile")
+                        .executes { showProfile() }
+                        .then(ClientCommandManager.literal("overlay").executes { toggleProfileOverlay() })
+                        .then(ClientCommandManager.literal("dump").executes { dumpProfile() })
+                        .then(ClientCommandManager.literal("reset").executes { resetProfile() })
+                        .then(ClientCommandManager.literal("enable").executes { setProfilerEnabled(true) })
+                        .then(ClientCommandManager.literal("disable").executes { setProfilerEnabled(false) }),
+                ).then(
+                    ClientCommandManager
+                        .literal("metrics")
+                        .executes { showMetricsStatus() }
+                        .then(ClientCommandManager.literal("dump").executes { dumpMetrics() })
+                        .then(
+                            ClientCommandManager
+                                .literal("file")
+                                .then(ClientCommandManager.literal("enable").executes { setMetricsFileExport(true) })
+                                .then(ClientCommandManager.literal("disable").executes { setMetricsFileExport(false) }),
+                        ).then(
+                            ClientCommandManager
+                                .literal("serve")
+                                .executes { startMetricsServer(MetricsExporter.DEFAULT_PORT) }
+                                .then(
+                                    ClientCommandManager
+                                        .argument("port", IntegerArgumentType.integer(1, 65535))
+                                        .executes { startMetricsServer(IntegerArgumentType.getInteger(it, "port")) },
+                                ),
+                        ).then(ClientCommandManager.literal("stop").executes { stopMetricsServer() }),
                 )
 
         val featureRoot = ClientCommandManager.literal("feature")
@@ -334,6 +365,81 @@ object InfiniteCommand {
         return 1
     }
 
+    private fun showProfile(): Int {
+        val rows = FeatureProfiler.report()
+        if (rows.isEmpty()) {
+            InfiniteClient.info(Text.translatable("command.infinite.profile.empty").string)
+            return 1
+        }
+        InfiniteClient.info(Text.translatable("command.infinite.profile.header", rows.size).string)
+        rows.take(10).forEach { row ->
+            val s = row.snapshot
+            InfiniteClient.log(
+                " - ${row.feature}.${row.hook}: p50=${FeatureProfiler.formatNanos(s.p50)}" +
+                    " p99=${FeatureProfiler.formatNanos(s.p99)} max=${FeatureProfiler.formatNanos(s.max)} (n=${s.count})",
+            )
+        }
+        return 1
+    }
+
+    private fun toggleProfileOverlay(): Int {
+        FeatureProfiler.overlayVisible = !FeatureProfiler.overlayVisible
+        val state = if (FeatureProfiler.overlayVisible) "enabled" else "disabled"
+        InfiniteClient.info(Text.translatable("command.infinite.profile.overlay.$state").string)
+        return 1
+    }
+
+    private fun dumpProfile(): Int {
+        val file = FeatureProfiler.dumpCsv()
+        InfiniteClient.info(Text.translatable("command.infinite.profile.dumped", file.absolutePath).string)
+        return 1
+    }
+
+    private fun resetProfile(): Int {
+        FeatureProfiler.reset()
+        InfiniteClient.info(Text.translatable("command.infinite.profile.reset").string)
+        return 1
+    }
+
+    private fun setProfilerEnabled(enabled: Boolean): Int {
+        FeatureProfiler.enabled = enabled
+        val state = if (enabled) "enabled" else "disabled"
+        InfiniteClient.info(Text.translatable("command.infinite.profile.state.$state").string)
+        return 1
+    }
+
+    private fun showMetricsStatus(): Int {
+        val file = if (MetricsExporter.fileExportEnabled) "enabled" else "disabled"
+        val endpoint = MetricsExporter.serverPort?.let { "http://127.0.0.1:$it/metrics" } ?: "disabled"
+        InfiniteClient.info(Text.translatable("command.infinite.metrics.status", file, endpoint).string)
+        return 1
+    }
+
+    private fun dumpMetrics(): Int {
+        val file = MetricsExporter.dump()
+        InfiniteClient.info(Text.translatable("command.infinite.metrics.dumped", file.absolutePath).string)
+        return 1
+    }
+
+    private fun setMetricsFileExport(enabled: Boolean): Int {
+        MetricsExporter.fileExportEnabled = enabled
+        val state = if (enabled) "enabled" else "disabled"
+        InfiniteClient.info(Text.translatable("command.infinite.metrics.file", state).string)
+        return 1
+    }
+
+    private fun startMetricsServer(port: Int): Int {
+        if (!MetricsExporter.startServer(port)) return 0
+        InfiniteClient.info(Text.translatable("command.infinite.metrics.serving", "http://127.0.0.1:$port/metrics").string)
+        return 1
+    }
+
+    private fun stopMetricsServer(): Int {
+        MetricsExporter.stopServer()
+        InfiniteClient.info(Text.translatable("command.infinite.metrics.stopped").string)
+        return 1
+    }
+
     private fun resetConfig(ctx: CommandContext<*>): Int {
         val cat =
             try {
@@ -471,10 +577,13 @@ object InfiniteCommand {
         @Suppress("UNCHECKED_CAST")
         val list = s.value as MutableList<String>
         if (add) {
-            if (!list.contains(value)) list.add(value)
+            if (!list.contains(value)) {
+                list.add(value)
+                s.notifyChanged()
+            }
             InfiniteClient.info(Text.translatable("command.infinite.setting.list.added", value, key).string)
         } else {
-            if (list.contains(value)) list.remove(value)
+            if (list.remove(value)) s.notifyChanged()
             InfiniteClient.info(Text.translatable("command.infinite.setting.list.removed", value, key).string)
         }
         return 1
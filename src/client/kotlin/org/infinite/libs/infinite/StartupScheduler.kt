@@ -0,0 +1,54 @@
+package org.infinite.libs.infinite
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents
+import net.minecraft.client.MinecraftClient
+import org.infinite.InfiniteClient
+
+/**
+ * ワールド参加時の処理のうち、最初のフレームの描画に必要ないもの (アドオンの読み込みや翻訳の確認など) を
+ * 後続のティックに分散して実行するスケジューラ。
+ * タスクは登録順に、1ティックあたりの時間予算内で実行されます (各ティックで少なくとも1つは実行)。
+ * 登録・実行ともにメインスレッドから行う前提です。
+ */
+object StartupScheduler : ClientTickEvents.EndTick {
+    private class Task(
+        val name: String,
+        val action: () -> Unit,
+    )
+
+    // 1ティックあたりに遅延タスクへ割り当てる時間
+    private const val BUDGET_NANOS = 2_000_000L
+
+    private val tasks = ArrayDeque<Task>()
+
+    /**
+     * タスクを末尾に追加します。実行中のタスクから追加することもできます。
+     */
+    fun schedule(
+        name: String,
+        action: () -> Unit,
+    ) {
+        tasks.addLast(Task(name, action))
+    }
+
+    override fun onEndTick(client: MinecraftClient) {
+        if (tasks.isEmpty() || client.world == null) return
+        val start = System.nanoTime()
+        do {
+            val task = tasks.removeFirst()
+            try {
+                task.action()
+            } catch (e: Exception) {
+                InfiniteClient.error("Startup task '${task.name}' failed: ${e.message}")
+            }
+        } while (tasks.isNotEmpty() && System.nanoTime() - start < BUDGET_NANOS)
+    }
+
+    fun clear() {
+        tasks.clear()
+    }
+
+    fun registerTickEvent() {
+        ClientTickEvents.END_CLIENT_TICK.register(this)
+    }
+}
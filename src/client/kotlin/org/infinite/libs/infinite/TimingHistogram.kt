@@ -0,0 +1,109 @@
+package org.infinite.libs.infinite
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * ナノ秒単位の処理時間を記録する、ロックフリーのローリングヒストグラム。
+ * バケットは2の累乗ごとに2分割した対数スケール (誤差は最大でおよそ25%) で、記録はアトミックな加算のみで行われます。
+ * 直近2ウィンドウ分 (現在と1つ前) のデータを保持し、[rotate] で古いウィンドウを捨てます。
+ */
+class TimingHistogram {
+    data class Snapshot(
+        val count: Long,
+        val p50: Long,
+        val p99: Long,
+        val max: Long,
+    )
+
+    private class Window {
+        val buckets = AtomicLongArray(BUCKETS)
+        val max = AtomicLong()
+
+        fun clear() {
+            for (i in 0 until BUCKETS) {
+                buckets.set(i, 0)
+            }
+            max.set(0)
+        }
+    }
+
+    @Volatile
+    private var current = Window()
+
+    @Volatile
+    private var previous = Window()
+
+    fun record(nanos: Long) {
+        val window = current
+        window.buckets.incrementAndGet(bucketOf(nanos))
+        val max = window.max
+        var observed = max.get()
+        while (nanos > observed && !max.compareAndSet(observed, nanos)) {
+            observed = max.get()
+        }
+    }
+
+    /**
+     * 1つ前のウィンドウを破棄し、現在のウィンドウを1つ前として扱います。
+     */
+    fun rotate() {
+        val old = previous
+        old.clear()
+        previous = current
+        current = old
+    }
+
+    fun reset() {
+        current.clear()
+        previous.clear()
+    }
+
+    fun snapshot(): Snapshot {
+        val a = current
+        val b = previous
+        val counts = LongArray(BUCKETS) { a.buckets.get(it) + b.buckets.get(it) }
+        val total = counts.sum()
+        return Snapshot(
+            total,
+            percentile(counts, total, 0.50),
+            percentile(counts, total, 0.99),
+            maxOf(a.max.get(), b.max.get()),
+        )
+    }
+
+    private fun percentile(
+        counts: LongArray,
+        total: Long,
+        fraction: Double,
+    ): Long {
+        if (total == 0L) return 0
+        val rank = (total * fraction).toLong().coerceAtLeast(1)
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank) return upperBound(i)
+        }
+        return upperBound(BUCKETS - 1)
+    }
+
+    companion object {
+        // 2^0 .. 2^63 ナノ秒をそれぞれ2分割する
+        private const val BUCKETS = 128
+
+        private fun bucketOf(nanos: Long): Int {
+            if (nanos <= 1) return 0
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(nanos)
+            val half = ((nanos ushr (exponent - 1)) and 1).toInt()
+            return exponent * 2 + half
+        }
+
+        private fun upperBound(bucket: Int): Long {
+            val exponent = bucket / 2
+            if (exponent == 0) return 1
+            val base = 1L shl exponent
+            val step = 1L shl (exponent - 1)
+            return base + step * (bucket % 2 + 1) - 1
+        }
+    }
+}
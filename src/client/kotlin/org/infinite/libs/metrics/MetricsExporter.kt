@@ -0,0 +1,188 @@
+package org.infinite.libs.metrics
+
+import com.sun.net.httpserver.HttpServer
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents
+import net.fabricmc.loader.api.FabricLoader
+import net.minecraft.client.MinecraftClient
+import org.infinite.InfiniteClient
+import org.infinite.libs.infinite.FeatureProfiler
+import java.io.File
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+/**
+ * [MetricsRegistry] の内容を定期的に書き出すエクスポーター。
+ * GUIを開かずにクライアントの状態を監視できるよう、次の2つの出力先を持ちます (どちらも既定では無効)。
+ *
+ * - ローリングファイル: `infinite/metrics/metrics.prom` にスナップショットを追記し、一定サイズで世代を切り替える
+ * - HTTPエンドポイント: ループバックアドレスのみで待ち受け、`/metrics` でPrometheusのテキスト形式を返す
+ *
+ * JVM引数 `-Dinfinite.metrics.file=true` と `-Dinfinite.metrics.port=<port>` で起動時から有効にできます。
+ * 出力内容はメインスレッドでティックの終わりに生成され、ファイルへの書き込みとHTTPの応答は別スレッドで行われます。
+ */
+object MetricsExporter : ClientTickEvents.EndTick {
+    const val DEFAULT_PORT = 9464
+
+    // HTTPで返すスナップショットの更新間隔
+    private const val REFRESH_INTERVAL_MS = 5_000L
+
+    // ファイルへ追記する間隔
+    private const val FILE_INTERVAL_MS = 60_000L
+
+    // ヒストグラムのウィンドウを進める間隔
+    private const val WINDOW_INTERVAL_MS = 30_000L
+
+    // 1ファイルの最大サイズと、保持する過去の世代数
+    private const val MAX_FILE_BYTES = 4L * 1024 * 1024
+    private const val MAX_ROLLED_FILES = 3
+
+    private const val FILE_NAME = "metrics.prom"
+
+    @Volatile
+    private var latest: ByteArray = ByteArray(0)
+
+    private var lastRefresh = 0L
+    private var lastFileWrite = 0L
+    private var lastRotate = System.currentTimeMillis()
+
+    var fileExportEnabled: Boolean = java.lang.Boolean.getBoolean("infinite.metrics.file")
+
+    private var server: HttpServer? = null
+    private var serverExecutor: ExecutorService? = null
+
+    // ファイルの書き込み専用スレッド。アイドル時にはスレッドは終了する
+    private val writer =
+        ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+            Thread(runnable, "Infinite Metrics Writer").apply { isDaemon = true }
+        }
+
+    val serverPort: Int?
+        get() = server?.address?.port
+
+    override fun onEndTick(client: MinecraftClient) {
+        val now = System.currentTimeMillis()
+        if (now - lastRotate >= WINDOW_INTERVAL_MS) {
+            lastRotate = now
+            MetricsRegistry.rotate()
+        }
+        val serving = server != null
+        val fileDue = fileExportEnabled && now - lastFileWrite >= FILE_INTERVAL_MS
+        if (!fileDue && !(serving && now - lastRefresh >= REFRESH_INTERVAL_MS)) return
+        val text = refresh(now)
+        if (fileDue) {
+            lastFileWrite = now
+            writer.execute { appendToFile(text, now) }
+        }
+    }
+
+    private fun refresh(now: Long): String {
+        lastRefresh = now
+        val text = MetricsRegistry.scrape()
+        latest = text.toByteArray(Charsets.UTF_8)
+        return text
+    }
+
+    /**
+     * 現在の値をすぐにファイルへ書き出し、そのファイルを返します。
+     */
+    fun dump(): File {
+        val now = System.currentTimeMillis()
+        val text = refresh(now)
+        lastFileWrite = now
+        writer.execute { appendToFile(text, now) }
+        return metricsDirectory().resolve(FILE_NAME)
+    }
+
+    private fun metricsDirectory(): File = FabricLoader.getInstance().gameDir.resolve("infinite").resolve("metrics").toFile()
+
+    private fun appendToFile(
+        text: String,
+        timestamp: Long,
+    ) {
+        try {
+            val dir = metricsDirectory()
+            if (!dir.exists()) {
+                dir.mkdirs()
+            }
+            val file = dir.resolve(FILE_NAME)
+            if (file.length() >= MAX_FILE_BYTES) {
+                roll(dir)
+            }
+            val time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())
+            file.appendText("# snapshot $time\n$text\n")
+        } catch (e: IOException) {
+            InfiniteClient.warn("Failed to write metrics: ${e.message}")
+        }
+    }
+
+    // metrics.prom -> metrics.1.prom -> metrics.2.prom ... と世代を1つずつずらし、最も古いものを削除する
+    private fun roll(dir: File) {
+        dir.resolve("metrics.$MAX_ROLLED_FILES.prom").delete()
+        for (generation in MAX_ROLLED_FILES - 1 downTo 1) {
+            val source = dir.resolve("metrics.$generation.prom")
+            if (source.exists()) {
+                source.renameTo(dir.resolve("metrics.${generation + 1}.prom"))
+            }
+        }
+        dir.resolve(FILE_NAME).renameTo(dir.resolve("metrics.1.prom"))
+    }
+
+    /**
+     * ループバックアドレスの [port] でHTTPエンドポイントを開始します。既に開始している場合は再起動します。
+     * @return 開始できた場合は true
+     */
+    fun startServer(port: Int): Boolean {
+        stopServer()
+        return try {
+            val executor =
+                Executors.newSingleThreadExecutor { runnable ->
+                    Thread(runnable, "Infinite Metrics Server").apply { isDaemon = true }
+                }
+            val httpServer = HttpServer.create(InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0)
+            httpServer.createContext("/metrics") { exchange ->
+                exchange.use {
+                    val body = latest
+                    it.responseHeaders.add("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                    it.sendResponseHeaders(200, body.size.toLong())
+                    it.responseBody.write(body)
+                }
+            }
+            httpServer.executor = executor
+            httpServer.start()
+            server = httpServer
+            serverExecutor = executor
+            // 最初のスクレイプで空の応答を返さないよう、すぐに内容を生成する
+            refresh(System.currentTimeMillis())
+            true
+        } catch (e: IOException) {
+            InfiniteClient.error("Failed to start metrics endpoint on port $port: ${e.message}")
+            false
+        } catch (e: LinkageError) {
+            // jdk.httpserver モジュールを含まないランタイムの場合
+            InfiniteClient.error("Metrics endpoint is not available in this Java runtime: ${e.message}")
+            false
+        }
+    }
+
+    fun stopServer() {
+        server?.stop(0)
+        server = null
+        serverExecutor?.shutdown()
+        serverExecutor = null
+    }
+
+    fun registerTickEvent() {
+        MetricsRegistry.registerCollector { FeatureProfiler.writeMetrics(it) }
+        ClientTickEvents.END_CLIENT_TICK.register(this)
+        Integer.getInteger("infinite.metrics.port")?.let { startServer(it) }
+    }
+}
@@ -0,0 +1,169 @@
+package org.infinite.libs.metrics
+
+import org.infinite.libs.infinite.TimingHistogram
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * クライアント全体のメトリクス (カウンター・ゲージ・ヒストグラム) を保持するレジストリ。
+ * 記録はアトミックな加算のみで行われるため、どのスレッドからでも呼び出せます。
+ * 保持している値は [MetricsExporter] によって定期的にPrometheusのテキスト形式で書き出されます。
+ *
+ * メトリクスは名前とラベルの組ごとに1つだけ生成され、同じ組で再度取得すると同じインスタンスが返ります。
+ * 高頻度で記録する箇所では、取得したインスタンスをフィールドに保持しておいてください。
+ */
+object MetricsRegistry {
+    private enum class Type(
+        val text: String,
+    ) {
+        Counter("counter"),
+        Gauge("gauge"),
+        Histogram("summary"),
+    }
+
+    class Counter internal constructor() {
+        private val adder = LongAdder()
+
+        fun inc() = adder.increment()
+
+        fun add(amount: Long) = adder.add(amount)
+
+        fun get(): Long = adder.sum()
+    }
+
+    class Gauge internal constructor(
+        private val supplier: () -> Double,
+    ) {
+        fun get(): Double = supplier()
+    }
+
+    /**
+     * ナノ秒単位の処理時間の分布。
+     * 分位数は [TimingHistogram] の直近のウィンドウから、合計と件数は起動時からの累計として出力されます。
+     */
+    class Histogram internal constructor() {
+        internal val window = TimingHistogram()
+        private val count = LongAdder()
+        private val sumNanos = LongAdder()
+
+        fun record(nanos: Long) {
+            window.record(nanos)
+            count.increment()
+            sumNanos.add(nanos)
+        }
+
+        fun count(): Long = count.sum()
+
+        fun sumNanos(): Long = sumNanos.sum()
+    }
+
+    /**
+     * レジストリに登録されていない値 (Featureごとの計測結果など) を出力時に書き込むためのコールバック。
+     */
+    fun interface Collector {
+        fun collect(writer: PrometheusWriter)
+    }
+
+    private class Family(
+        val name: String,
+        val help: String,
+        val type: Type,
+    ) {
+        // ラベル文字列 -> メトリクス
+        val series = ConcurrentHashMap<String, Any>()
+    }
+
+    private const val NANOS_PER_SECOND = 1_000_000_000.0
+
+    private val families = ConcurrentHashMap<String, Family>()
+    private val collectors = CopyOnWriteArrayList<Collector>()
+
+    fun counter(
+        name: String,
+        help: String,
+        labels: String = "",
+    ): Counter = series(name, help, Type.Counter, labels) { Counter() }
+
+    /**
+     * 出力時に [supplier] を呼び出して値を得るゲージを登録します。[supplier] はメインスレッドから呼び出されます。
+     */
+    fun gauge(
+        name: String,
+        help: String,
+        labels: String = "",
+        supplier: () -> Double,
+    ): Gauge = series(name, help, Type.Gauge, labels) { Gauge(supplier) }
+
+    /**
+     * 処理時間のヒストグラムを返します。出力時には秒単位に換算されるため、名前は `_seconds` で終えてください。
+     */
+    fun histogram(
+        name: String,
+        help: String,
+        labels: String = "",
+    ): Histogram = series(name, help, Type.Histogram, labels) { Histogram() }
+
+    fun registerCollector(collector: Collector) {
+        collectors.add(collector)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <M : Any> series(
+        name: String,
+        help: String,
+        type: Type,
+        labels: String,
+        create: () -> M,
+    ): M {
+        val family = families.computeIfAbsent(name) { Family(name, help, type) }
+        check(family.type == type) { "Metric $name is already registered as ${family.type.text}" }
+        return family.series.computeIfAbsent(labels) { create() } as M
+    }
+
+    /**
+     * ヒストグラムの古いウィンドウを破棄します。[MetricsExporter] から定期的に呼び出されます。
+     */
+    fun rotate() {
+        for (family in families.values) {
+            for (metric in family.series.values) {
+                (metric as? Histogram)?.window?.rotate()
+            }
+        }
+    }
+
+    /**
+     * すべてのメトリクスをPrometheusのテキスト形式で出力します。
+     * ゲージやコレクターがゲームの状態を読み取るため、メインスレッドから呼び出してください。
+     */
+    fun scrape(): String {
+        val writer = PrometheusWriter()
+        for (family in families.values.sortedBy { it.name }) {
+            writer.header(family.name, family.help, family.type.text)
+            for ((labels, metric) in family.series.entries.sortedBy { it.key }) {
+                when (metric) {
+                    is Counter -> writer.sample(family.name, labels, metric.get())
+                    is Gauge -> writer.sample(family.name, labels, metric.get())
+                    is Histogram -> writeHistogram(writer, family.name, labels, metric)
+                }
+            }
+        }
+        for (collector in collectors) {
+            collector.collect(writer)
+        }
+        return writer.toString()
+    }
+
+    private fun writeHistogram(
+        writer: PrometheusWriter,
+        name: String,
+        labels: String,
+        histogram: Histogram,
+    ) {
+        val snapshot = histogram.window.snapshot()
+        writer.sample(name, PrometheusWriter.join(labels, "quantile=\"0.5\""), snapshot.p50 / NANOS_PER_SECOND)
+        writer.sample(name, PrometheusWriter.join(labels, "quantile=\"0.99\""), snapshot.p99 / NANOS_PER_SECOND)
+        writer.sample("${name}_sum", labels, histogram.sumNanos() / NANOS_PER_SECOND)
+        writer.sample("${name}_count", labels, histogram.count())
+    }
+}
@@ -0,0 +1,37 @@
+package org.infinite.libs.metrics
+
+import net.minecraft.network.packet.Packet
+import net.minecraft.network.packet.PacketType
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * 送受信したパケットの数をパケットの種類ごとに数えます。ネットワーク系のmixinから呼び出されます。
+ * 受信はnettyのスレッドから呼び出されるため、カウンターの取得・加算はいずれもスレッドセーフです。
+ */
+object NetworkMetrics {
+    private const val METRIC = "infinite_packets_total"
+    private const val HELP = "Packets sent and received by the client"
+
+    private val received = ConcurrentHashMap<PacketType<*>, MetricsRegistry.Counter>()
+    private val sent = ConcurrentHashMap<PacketType<*>, MetricsRegistry.Counter>()
+
+    @JvmStatic
+    fun onReceived(packet: Packet<*>) {
+        counter(received, "in", packet.packetType).inc()
+    }
+
+    @JvmStatic
+    fun onSent(packet: Packet<*>) {
+        counter(sent, "out", packet.packetType).inc()
+    }
+
+    // 既に生成済みのカウンターはラベル文字列を組み立てずに取得する
+    private fun counter(
+        counters: ConcurrentHashMap<PacketType<*>, MetricsRegistry.Counter>,
+        direction: String,
+        type: PacketType<*>,
+    ): MetricsRegistry.Counter =
+        counters[type] ?: counters.computeIfAbsent(type) {
+            MetricsRegistry.counter(METRIC, HELP, PrometheusWriter.labels("direction" to direction, "type" to it.id().toString()))
+        }
+}
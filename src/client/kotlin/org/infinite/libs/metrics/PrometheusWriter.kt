@@ -0,0 +1,84 @@
+package org.infinite.libs.metrics
+
+/**
+ * Prometheusのテキスト形式 (exposition format 0.0.4) で出力を組み立てるためのヘルパー。
+ * ラベルは `key="value",...` の形の文字列としてそのまま扱います ([labels] で生成できます)。
+ */
+class PrometheusWriter {
+    private val out = StringBuilder()
+
+    fun header(
+        name: String,
+        help: String,
+        type: String,
+    ) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n')
+    }
+
+    fun sample(
+        name: String,
+        labels: String,
+        value: Long,
+    ) {
+        appendName(name, labels)
+        out.append(value).append('\n')
+    }
+
+    fun sample(
+        name: String,
+        labels: String,
+        value: Double,
+    ) {
+        appendName(name, labels)
+        out.append(formatDouble(value)).append('\n')
+    }
+
+    private fun appendName(
+        name: String,
+        labels: String,
+    ) {
+        out.append(name)
+        if (labels.isNotEmpty()) {
+            out.append('{').append(labels).append('}')
+        }
+        out.append(' ')
+    }
+
+    override fun toString(): String = out.toString()
+
+    companion object {
+        /**
+         * ラベルの組を `key="value",...` の形の文字列にします。値はエスケープされます。
+         */
+        fun labels(vararg pairs: Pair<String, String>): String =
+            pairs.joinToString(",") { (key, value) -> "$key=\"${escape(value)}\"" }
+
+        /**
+         * 2つのラベル文字列を連結します。どちらかが空の場合はもう一方をそのまま返します。
+         */
+        fun join(
+            a: String,
+            b: String,
+        ): String =
+            when {
+                a.isEmpty() -> b
+                b.isEmpty() -> a
+                else -> "$a,$b"
+            }
+
+        private fun escape(value: String): String =
+            value
+                .replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+
+        private fun formatDouble(value: Double): String =
+            when {
+                value.isNaN() -> "NaN"
+                value == Double.POSITIVE_INFINITY -> "+Inf"
+                value == Double.NEGATIVE_INFINITY -> "-Inf"
+                else -> value.toString()
+            }
+    }
+}
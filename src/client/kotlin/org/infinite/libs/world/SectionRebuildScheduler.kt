@@ -0,0 +1,117 @@
+package org.infinite.libs.world
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents
+import net.minecraft.block.BlockState
+import net.minecraft.client.MinecraftClient
+import net.minecraft.util.math.ChunkPos
+import java.util.function.Predicate
+
+/**
+ * チャンクメッシュの部分的な再構築をスケジュールします。
+ * `WorldRenderer.reload()` のように全チャンクとリソースを破棄するのではなく、
+ * パレットに対象ブロックを含むセクションだけを、プレイヤーに近い順に少しずつ再構築キューへ送ります。
+ */
+object SectionRebuildScheduler : ClientTickEvents.EndTick {
+    // 1ティックあたりに再構築をスケジュールするセクションの上限
+    private const val SECTIONS_PER_TICK = 256
+
+    // 走査待ちのチャンク (近い順)
+    private val pendingChunks = ArrayDeque<Long>()
+
+    // 先頭のチャンクで、次に調べるセクションのインデックス (前のティックで上限に達した場合の続き)
+    private var nextSectionIndex = 0
+
+    // 現在のリクエストで対象となるブロック状態の条件 (複数リクエストはORで合成)
+    private var predicate: Predicate<BlockState>? = null
+
+    /**
+     * パレットに [predicate] を満たすブロックを含むセクションの再構築を要求します。
+     * 既に処理中のリクエストがある場合は条件を合成し、走査を最初からやり直します。
+     *
+     * @param predicate 見え方が変化したブロック状態に対して true を返す条件
+     */
+    fun request(predicate: Predicate<BlockState>) {
+        val client = MinecraftClient.getInstance()
+        val player = client.player ?: return
+        this.predicate = this.predicate?.or(predicate) ?: predicate
+        pendingChunks.clear()
+        nextSectionIndex = 0
+
+        val centerX = player.chunkPos.x
+        val centerZ = player.chunkPos.z
+        val radius = client.options.clampedViewDistance + 1
+        val chunks = mutableListOf<Long>()
+        for (dx in -radius..radius) {
+            for (dz in -radius..radius) {
+                chunks.add(ChunkPos.toLong(centerX + dx, centerZ + dz))
+            }
+        }
+        // 近い順に並べる
+        chunks.sortBy {
+            val dx = ChunkPos.getPackedX(it) - centerX
+            val dz = ChunkPos.getPackedZ(it) - centerZ
+            dx * dx + dz * dz
+        }
+        pendingChunks.addAll(chunks)
+    }
+
+    /**
+     * 保留中のリクエストを破棄します (ワールド切断時など)。
+     */
+    fun clear() {
+        pendingChunks.clear()
+        nextSectionIndex = 0
+        predicate = null
+    }
+
+    override fun onEndTick(client: MinecraftClient) {
+        val condition = predicate ?: return
+        val world = client.world
+        if (world == null) {
+            clear()
+            return
+        }
+        val worldRenderer = client.worldRenderer
+        var scheduled = 0
+        while (scheduled < SECTIONS_PER_TICK) {
+            val packed = pendingChunks.firstOrNull() ?: break
+            val chunkX = ChunkPos.getPackedX(packed)
+            val chunkZ = ChunkPos.getPackedZ(packed)
+            // ロードされていないチャンクは、ロード時に通常通りメッシュが生成されるため無視する
+            val chunk = world.chunkManager.getWorldChunk(chunkX, chunkZ)
+            if (chunk == null) {
+                pendingChunks.removeFirst()
+                nextSectionIndex = 0
+                continue
+            }
+            val sections = chunk.sectionArray
+            var index = nextSectionIndex
+            while (index < sections.size && scheduled < SECTIONS_PER_TICK) {
+                val section = sections[index]
+                val sectionY = chunk.sectionIndexToCoord(index)
+                index++
+                // パレットのみを確認し、対象ブロックを含まないセクションは再構築しない
+                if (section.isEmpty || !section.hasAny(condition)) continue
+                worldRenderer.scheduleChunkRenders(chunkX, sectionY, chunkZ, chunkX, sectionY, chunkZ)
+                scheduled++
+            }
+            if (index < sections.size) {
+                // 上限に達したので、残りのセクションは次のティックで続きから調べる
+                nextSectionIndex = index
+                break
+            }
+            pendingChunks.removeFirst()
+            nextSectionIndex = 0
+        }
+        if (pendingChunks.isEmpty()) {
+            predicate = null
+        }
+    }
+
+    /**
+     * InfiniteClientのonInitializeClientでこのスケジューラを登録するために呼び出す
+     */
+    fun registerTickEvent() {
+        ClientTickEvents.END_CLIENT_TICK.register(this)
+    }
+}
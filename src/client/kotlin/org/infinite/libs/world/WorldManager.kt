@@ -3,6 +3,8 @@ package org.infinite.libs.world
 import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket
 import net.minecraft.network.packet.s2c.play.ChunkData
 import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket
+import org.infinite.features.automatic.branchminer.AirComponentCache
+import org.infinite.libs.ai.pathing.AStarPathPlanner
 
 class WorldManager {
     sealed class Chunk {
@@ -34,6 +36,8 @@ class WorldManager {
         z: Int,
         chunkData: ChunkData,
     ) {
+        WorldSnapshot.invalidateChunk(x, z)
+        AirComponentCache.onChunkLoad(x, z)
         queue.addLast(Chunk.Data(x, z, chunkData))
     }
 
@@ -42,6 +46,11 @@ class WorldManager {
      * @param packet チャンクデルタ更新パケット
      */
     fun handleDeltaUpdate(packet: ChunkDeltaUpdateS2CPacket) {
+        packet.visitUpdates { pos, _ ->
+            WorldSnapshot.invalidate(pos)
+            AStarPathPlanner.onBlockUpdate(pos)
+            AirComponentCache.onBlockUpdate(pos)
+        }
         queue.addLast(Chunk.DeltaUpdate(packet))
     }
 
@@ -50,6 +59,9 @@ class WorldManager {
      * @param packet ブロック更新パケット
      */
     fun handleBlockUpdate(packet: BlockUpdateS2CPacket) {
+        WorldSnapshot.invalidate(packet.pos)
+        AStarPathPlanner.onBlockUpdate(packet.pos)
+        AirComponentCache.onBlockUpdate(packet.pos)
         queue.addLast(Chunk.BlockUpdate(packet))
     }
 }
@@ -0,0 +1,196 @@
+package org.infinite.libs.world
+
+import net.minecraft.block.BlockState
+import net.minecraft.block.Blocks
+import net.minecraft.client.MinecraftClient
+import net.minecraft.util.math.BlockBox
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.ChunkPos
+import net.minecraft.world.World
+import net.minecraft.world.chunk.ChunkStatus
+import net.minecraft.world.chunk.PalettedContainer
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+/**
+ * 指定した範囲のブロックの状態を複製した、読み取り専用のスナップショット。
+ *
+ * 範囲に含まれる `ChunkSection` のパレット (PalettedContainer) をメインスレッドで複製して保持するため、
+ * 作成後はどのスレッドからでも安全に読み取れます。時間のかかる探索は [query] でワーカースレッドに逃がし、
+ * 結果だけをメインスレッドで受け取ってください。
+ *
+ * 複製したセクションは、ブロックの更新 ([WorldManager] に届くパケット) があるか一定時間が経つまで
+ * 後続のスナップショットと共有されます (コピーオンライト)。
+ * 範囲外・未読み込みのチャンクは [Blocks.VOID_AIR] として扱われます。
+ */
+class WorldSnapshot private constructor(
+    val bounds: BlockBox,
+    private val bottomSectionY: Int,
+    private val sectionsPerColumn: Int,
+    private val minChunkX: Int,
+    private val minChunkZ: Int,
+    private val chunksZ: Int,
+    private val columns: Array<Column?>,
+) {
+    // 1チャンク分のセクションの複製。空のセクションは null (すべて空気)
+    private class Column(
+        val sections: Array<PalettedContainer<BlockState>?>,
+        val capturedAt: Long,
+    )
+
+    fun getBlockState(pos: BlockPos): BlockState = getBlockState(pos.x, pos.y, pos.z)
+
+    fun getBlockState(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): BlockState {
+        if (!contains(x, y, z)) return VOID_AIR
+        val column = columns[((x shr 4) - minChunkX) * chunksZ + ((z shr 4) - minChunkZ)] ?: return VOID_AIR
+        val sectionIndex = (y shr 4) - bottomSectionY
+        if (sectionIndex !in 0 until sectionsPerColumn) return VOID_AIR
+        val section = column.sections[sectionIndex] ?: return AIR
+        return section.get(x and 15, y and 15, z and 15)
+    }
+
+    fun contains(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Boolean = x in bounds.minX..bounds.maxX && y in bounds.minY..bounds.maxY && z in bounds.minZ..bounds.maxZ
+
+    companion object {
+        private val AIR: BlockState = Blocks.AIR.defaultState
+        private val VOID_AIR: BlockState = Blocks.VOID_AIR.defaultState
+
+        // 複製したセクションを共有し続ける最長時間 (パケット以外での変更を取りこぼした場合の保険)
+        private const val MAX_COLUMN_AGE_MS = 1_000L
+
+        // 共有用に保持する複製の最大チャンク数。超えた場合は古いものから破棄する
+        private const val MAX_CACHED_COLUMNS = 1_024
+
+        // ChunkPos.toLong -> 複製済みのセクション (メインスレッドからのみアクセス)
+        private val columnCache = HashMap<Long, Column>()
+
+        // 探索用のワーカースレッド。アイドル時にはスレッドは終了する
+        private val executor =
+            ThreadPoolExecutor(2, 2, 5, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+                Thread(runnable, "Infinite World Query").apply { isDaemon = true }
+            }.apply { allowCoreThreadTimeOut(true) }
+
+        /**
+         * [bounds] の範囲のスナップショットを作成します。メインスレッドから呼び出してください。
+         */
+        fun capture(
+            world: World,
+            bounds: BlockBox,
+        ): WorldSnapshot {
+            val clamped =
+                BlockBox(
+                    bounds.minX,
+                    maxOf(bounds.minY, world.bottomY),
+                    bounds.minZ,
+                    bounds.maxX,
+                    minOf(bounds.maxY, world.topYInclusive),
+                    bounds.maxZ,
+                )
+            val minChunkX = clamped.minX shr 4
+            val minChunkZ = clamped.minZ shr 4
+            val chunksX = (clamped.maxX shr 4) - minChunkX + 1
+            val chunksZ = (clamped.maxZ shr 4) - minChunkZ + 1
+            val now = System.currentTimeMillis()
+            val columns =
+                Array(chunksX * chunksZ) { index ->
+                    captureColumn(world, minChunkX + index / chunksZ, minChunkZ + index % chunksZ, now)
+                }
+            return WorldSnapshot(
+                clamped,
+                world.bottomSectionCoord,
+                world.countVerticalSections(),
+                minChunkX,
+                minChunkZ,
+                chunksZ,
+                columns,
+            )
+        }
+
+        /**
+         * [bounds] のスナップショットを作成し、[compute] をワーカースレッドで実行して、その結果をメインスレッドの [onResult] に渡します。
+         * 返された Future をキャンセルすると、[onResult] は呼び出されません。
+         */
+        fun <T> query(
+            world: World,
+            bounds: BlockBox,
+            compute: (WorldSnapshot) -> T,
+            onResult: (T) -> Unit,
+        ): CompletableFuture<Void> = supply(world, bounds, compute).thenAccept { onResult(it) }
+
+        /**
+         * [bounds] のスナップショットを作成し、[compute] をワーカースレッドで実行します。
+         * 返された Future はメインスレッドで [compute] の結果を持って完了します。
+         * [compute] が例外を投げた場合も、メインスレッドでその例外により完了します。
+         */
+        fun <T> supply(
+            world: World,
+            bounds: BlockBox,
+            compute: (WorldSnapshot) -> T,
+        ): CompletableFuture<T> {
+            val snapshot = capture(world, bounds)
+            val result = CompletableFuture<T>()
+            // thenApplyAsync は失敗をワーカースレッドのまま伝えるため、成功・失敗のどちらもメインスレッドで完了させる
+            CompletableFuture
+                .supplyAsync({ compute(snapshot) }, executor)
+                .whenCompleteAsync({ value, error ->
+                    if (error != null) result.completeExceptionally(error) else result.complete(value)
+                }, MinecraftClient.getInstance())
+            return result
+        }
+
+        private fun captureColumn(
+            world: World,
+            chunkX: Int,
+            chunkZ: Int,
+            now: Long,
+        ): Column? {
+            val key = ChunkPos.toLong(chunkX, chunkZ)
+            val cached = columnCache[key]
+            if (cached != null && now - cached.capturedAt < MAX_COLUMN_AGE_MS) return cached
+            val chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.FULL, false)
+            if (chunk == null) {
+                columnCache.remove(key)
+                return null
+            }
+            val sections =
+                Array(chunk.sectionArray.size) { index ->
+                    val section = chunk.sectionArray[index]
+                    if (section.isEmpty) null else section.blockStateContainer.copy()
+                }
+            if (columnCache.size >= MAX_CACHED_COLUMNS) {
+                columnCache.values.removeIf { now - it.capturedAt >= MAX_COLUMN_AGE_MS }
+                if (columnCache.size >= MAX_CACHED_COLUMNS) columnCache.clear()
+            }
+            return Column(sections, now).also { columnCache[key] = it }
+        }
+
+        /**
+         * [pos] を含むチャンクの複製を破棄します。以降のスナップショットは改めて複製します。
+         * 既に作成済みのスナップショットには影響しません。
+         */
+        fun invalidate(pos: BlockPos) {
+            columnCache.remove(ChunkPos.toLong(pos.x shr 4, pos.z shr 4))
+        }
+
+        fun invalidateChunk(
+            chunkX: Int,
+            chunkZ: Int,
+        ) {
+            columnCache.remove(ChunkPos.toLong(chunkX, chunkZ))
+        }
+
+        fun clear() {
+            columnCache.clear()
+        }
+    }
+}
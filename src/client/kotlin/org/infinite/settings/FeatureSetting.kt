@@ -4,11 +4,43 @@ import org.infinite.utils.toSnakeCase
 
 sealed class FeatureSetting<T>(
     val name: String,
-    var value: T,
+    value: T,
     val defaultValue: T,
 ) {
+    // 数値・真偽値の設定では、プリミティブで保持している値へ委譲するためにオーバーライドされる
+    open var value: T = value
+        set(newValue) {
+            field = newValue
+            notifyChanged()
+        }
+
     lateinit var descriptionKey: String
 
+    // 値の型を問わない変更通知 (設定の自動保存などに使用)。Propertyと同じくコピーオンライトで保持する
+    @Volatile
+    private var changeListeners: Array<() -> Unit> = emptyArray()
+
+    @Synchronized
+    fun addChangeListener(listener: () -> Unit) {
+        changeListeners += listener
+    }
+
+    @Synchronized
+    fun removeChangeListener(listener: () -> Unit) {
+        val index = changeListeners.indexOf(listener)
+        if (index >= 0) changeListeners = changeListeners.filterIndexed { i, _ -> i != index }.toTypedArray()
+    }
+
+    /**
+     * 値が変更されたことを通知します。
+     * リストやマップの設定を直接変更 (add / remove など) した場合は、変更後にこのメソッドを呼び出してください。
+     */
+    fun notifyChanged() {
+        for (listener in changeListeners) {
+            listener()
+        }
+    }
+
     init {
         // --- Name Validation ---
         // 1. nameが空でないこと
@@ -42,31 +74,106 @@ sealed class FeatureSetting<T>(
         value = defaultValue
     }
 
+    // 以下の数値・真偽値の設定は値をプリミティブのPropertyに保持します。
+    // 毎フレームやエンティティごとに読み出す箇所では、ボックス化を避けるため value ではなく booleanValue などを使用してください。
+
     class BooleanSetting(
         name: String,
         defaultValue: Boolean,
-    ) : FeatureSetting<Boolean>(name, defaultValue, defaultValue)
+    ) : FeatureSetting<Boolean>(name, defaultValue, defaultValue) {
+        val property = BooleanProperty(defaultValue).also { it.addListener { _, _ -> notifyChanged() } }
+
+        var booleanValue: Boolean
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        override var value: Boolean
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        fun addListener(listener: BooleanListener) = property.addListener(listener)
+
+        fun removeListener(listener: BooleanListener) = property.removeListener(listener)
+    }
 
     class IntSetting(
         name: String,
         defaultValue: Int,
         val min: Int,
         val max: Int,
-    ) : FeatureSetting<Int>(name, defaultValue, defaultValue)
+    ) : FeatureSetting<Int>(name, defaultValue, defaultValue) {
+        val property = IntProperty(defaultValue).also { it.addListener { _, _ -> notifyChanged() } }
+
+        var intValue: Int
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        override var value: Int
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        fun addListener(listener: IntListener) = property.addListener(listener)
+
+        fun removeListener(listener: IntListener) = property.removeListener(listener)
+    }
 
     class FloatSetting(
         name: String,
         defaultValue: Float,
         val min: Float,
         val max: Float,
-    ) : FeatureSetting<Float>(name, defaultValue, defaultValue)
+    ) : FeatureSetting<Float>(name, defaultValue, defaultValue) {
+        val property = FloatProperty(defaultValue).also { it.addListener { _, _ -> notifyChanged() } }
+
+        var floatValue: Float
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        override var value: Float
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        fun addListener(listener: FloatListener) = property.addListener(listener)
+
+        fun removeListener(listener: FloatListener) = property.removeListener(listener)
+    }
 
     class DoubleSetting(
         name: String,
         defaultValue: Double,
         val min: Double,
         val max: Double,
-    ) : FeatureSetting<Double>(name, defaultValue, defaultValue)
+    ) : FeatureSetting<Double>(name, defaultValue, defaultValue) {
+        val property = DoubleProperty(defaultValue).also { it.addListener { _, _ -> notifyChanged() } }
+
+        var doubleValue: Double
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        override var value: Double
+            get() = property.value
+            set(newValue) {
+                property.value = newValue
+            }
+
+        fun addListener(listener: DoubleListener) = property.addListener(listener)
+
+        fun removeListener(listener: DoubleListener) = property.removeListener(listener)
+    }
 
     class StringSetting(
         name: String,
@@ -0,0 +1,149 @@
+package org.infinite.settings
+
+// Property<T> のプリミティブ特化版。
+// 値はボックス化されずに保持され、リスナーもプリミティブ型の引数で呼び出されるため、読み書きでアロケーションが発生しません。
+// リスナー配列は変更時にのみコピーされ (コピーオンライト)、通知時はロックもコピーも行いません。
+
+fun interface BooleanListener {
+    fun onChanged(
+        oldValue: Boolean,
+        newValue: Boolean,
+    )
+}
+
+fun interface IntListener {
+    fun onChanged(
+        oldValue: Int,
+        newValue: Int,
+    )
+}
+
+fun interface FloatListener {
+    fun onChanged(
+        oldValue: Float,
+        newValue: Float,
+    )
+}
+
+fun interface DoubleListener {
+    fun onChanged(
+        oldValue: Double,
+        newValue: Double,
+    )
+}
+
+class BooleanProperty(
+    initialValue: Boolean,
+) {
+    @Volatile
+    private var listeners: Array<BooleanListener> = emptyArray()
+
+    var value: Boolean = initialValue
+        set(newValue) {
+            if (field != newValue) {
+                val oldValue = field
+                field = newValue
+                for (listener in listeners) {
+                    listener.onChanged(oldValue, newValue)
+                }
+            }
+        }
+
+    @Synchronized
+    fun addListener(listener: BooleanListener) {
+        listeners += listener
+    }
+
+    @Synchronized
+    fun removeListener(listener: BooleanListener) {
+        val index = listeners.indexOf(listener)
+        if (index >= 0) listeners = listeners.filterIndexed { i, _ -> i != index }.toTypedArray()
+    }
+}
+
+class IntProperty(
+    initialValue: Int,
+) {
+    @Volatile
+    private var listeners: Array<IntListener> = emptyArray()
+
+    var value: Int = initialValue
+        set(newValue) {
+            if (field != newValue) {
+                val oldValue = field
+                field = newValue
+                for (listener in listeners) {
+                    listener.onChanged(oldValue, newValue)
+                }
+            }
+        }
+
+    @Synchronized
+    fun addListener(listener: IntListener) {
+        listeners += listener
+    }
+
+    @Synchronized
+    fun removeListener(listener: IntListener) {
+        val index = listeners.indexOf(listener)
+        if (index >= 0) listeners = listeners.filterIndexed { i, _ -> i != index }.toTypedArray()
+    }
+}
+
+class FloatProperty(
+    initialValue: Float,
+) {
+    @Volatile
+    private var listeners: Array<FloatListener> = emptyArray()
+
+    var value: Float = initialValue
+        set(newValue) {
+            if (field != newValue) {
+                val oldValue = field
+                field = newValue
+                for (listener in listeners) {
+                    listener.onChanged(oldValue, newValue)
+                }
+            }
+        }
+
+    @Synchronized
+    fun addListener(listener: FloatListener) {
+        listeners += listener
+    }
+
+    @Synchronized
+    fun removeListener(listener: FloatListener) {
+        val index = listeners.indexOf(listener)
+        if (index >= 0) listeners = listeners.filterIndexed { i, _ -> i != index }.toTypedArray()
+    }
+}
+
+class DoubleProperty(
+    initialValue: Double,
+) {
+    @Volatile
+    private var listeners: Array<DoubleListener> = emptyArray()
+
+    var value: Double = initialValue
+        set(newValue) {
+            if (field != newValue) {
+                val oldValue = field
+                field = newValue
+                for (listener in listeners) {
+                    listener.onChanged(oldValue, newValue)
+                }
+            }
+        }
+
+    @Synchronized
+    fun addListener(listener: DoubleListener) {
+        listeners += listener
+    }
+
+    @Synchronized
+    fun removeListener(listener: DoubleListener) {
+        val index = listeners.indexOf(listener)
+        if (index >= 0) listeners = listeners.filterIndexed { i, _ -> i != index }.toTypedArray()
+    }
+}
@@ -3,40 +3,31 @@ package org.infinite.settings
 class Property<T>(
     initialValue: T,
 ) {
-    // リスナーリストの同期に使用するロックオブジェクト (Propertyインスタンス自体をロックすることも可能だが、ここでは明示的なロックを使用)
-    private val listenerLock = Any()
-
-    // リスナーリスト自体はプライベートなままで、操作時にロックを使用
-    private val listeners = mutableListOf<(oldValue: T, newValue: T) -> Unit>()
+    // リスナーは不変の配列として保持し、追加・削除時にのみ新しい配列へ差し替える (コピーオンライト)。
+    // 通知側は配列の参照を一度読むだけなので、ロックもコピーも不要で、通知中に登録・解除されても安全に反復できる
+    @Volatile
+    private var listeners: Array<(oldValue: T, newValue: T) -> Unit> = emptyArray()
 
     var value: T = initialValue
         set(newValue) {
             if (field != newValue) {
                 val oldValue = field
                 field = newValue
-
-                // 【重要修正 1】リスナーを実行する前に、ロックを使って安全にリストのコピーを作成する
-                val listenersToNotify =
-                    synchronized(listenerLock) {
-                        listeners.toList() // コピーを作成
-                    }
-
-                // コピーに対して反復処理を実行。これにより ConcurrentModificationException を回避
-                listenersToNotify.forEach { it(oldValue, newValue) }
+                for (listener in listeners) {
+                    listener(oldValue, newValue)
+                }
             }
         }
 
+    // 配列の差し替え同士が競合しないよう、変更操作のみ同期する
+    @Synchronized
     fun addListener(listener: (oldValue: T, newValue: T) -> Unit) {
-        // 【重要修正 2】リストの変更操作を同期
-        synchronized(listenerLock) {
-            listeners.add(listener)
-        }
+        listeners += listener
     }
 
+    @Synchronized
     fun removeListener(listener: (oldValue: T, newValue: T) -> Unit) {
-        // 【重要修正 3】リストの変更操作を同期
-        synchronized(listenerLock) {
-            listeners.remove(listener)
-        }
+        val index = listeners.indexOf(listener)
+        if (index >= 0) listeners = listeners.filterIndexed { i, _ -> i != index }.toTypedArray()
     }
 }
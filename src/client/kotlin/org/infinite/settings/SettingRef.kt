@@ -0,0 +1,105 @@
+package org.infinite.settings
+
+import org.infinite.ConfigurableFeature
+import org.infinite.InfiniteClient
+
+/**
+ * 特定のFeatureの特定の設定への型付きハンドル。
+ * Featureと設定の解決は初回 (およびFeatureの再登録後) に一度だけ行われるため、
+ * mixinのstaticフィールドに保持しておけば、毎フレームの取得はフィールドの参照だけで済みます。
+ *
+ * 取得時の挙動は [InfiniteClient.getSettingFloat] などと同じで、Featureが無効な場合や設定が見つからない場合は既定値を返します。
+ */
+class SettingRef<T> private constructor(
+    private val featureClass: Class<out ConfigurableFeature>,
+    private val settingName: String,
+    private val settingType: Class<out FeatureSetting<*>>,
+) {
+    private class Resolved<T>(
+        val feature: ConfigurableFeature,
+        val setting: FeatureSetting<T>,
+        val revision: Int,
+    )
+
+    @Volatile
+    private var resolved: Resolved<T>? = null
+
+    /**
+     * 解決済みの設定を返します。Featureが登録されていない場合や型が一致しない場合は null を返します。
+     */
+    fun setting(): FeatureSetting<T>? = resolve()?.setting
+
+    /**
+     * Featureが有効な場合は設定値を、そうでない場合は [defaultValue] を返します。
+     */
+    fun get(defaultValue: T): T {
+        val r = resolve() ?: return defaultValue
+        return if (r.feature.isEnabled()) r.setting.value else defaultValue
+    }
+
+    /**
+     * Booleanの設定について、Featureが有効かつ設定値が true の場合に true を返します。
+     */
+    fun isEnabled(): Boolean {
+        val r = resolve() ?: return false
+        val setting = r.setting as? FeatureSetting.BooleanSetting ?: return false
+        return r.feature.isEnabled() && setting.booleanValue
+    }
+
+    // 以下はボックス化を伴わない取得。値の型が一致しない場合は既定値を返します
+
+    fun getInt(defaultValue: Int): Int {
+        val r = resolve() ?: return defaultValue
+        val setting = r.setting as? FeatureSetting.IntSetting ?: return defaultValue
+        return if (r.feature.isEnabled()) setting.intValue else defaultValue
+    }
+
+    fun getFloat(defaultValue: Float): Float {
+        val r = resolve() ?: return defaultValue
+        val setting = r.setting as? FeatureSetting.FloatSetting ?: return defaultValue
+        return if (r.feature.isEnabled()) setting.floatValue else defaultValue
+    }
+
+    fun getDouble(defaultValue: Double): Double {
+        val r = resolve() ?: return defaultValue
+        val setting = r.setting as? FeatureSetting.DoubleSetting ?: return defaultValue
+        return if (r.feature.isEnabled()) setting.doubleValue else defaultValue
+    }
+
+    private fun resolve(): Resolved<T>? {
+        val revision = InfiniteClient.featureRevision
+        val current = resolved
+        if (current != null && current.revision == revision) return current
+        val feature = InfiniteClient.getFeature(featureClass) ?: return null
+        val setting = feature.getSetting(settingName) ?: return null
+        if (!settingType.isInstance(setting)) return null
+        @Suppress("UNCHECKED_CAST")
+        return Resolved(feature, setting as FeatureSetting<T>, revision).also { resolved = it }
+    }
+
+    companion object {
+        @JvmStatic
+        fun ofBoolean(
+            featureClass: Class<out ConfigurableFeature>,
+            settingName: String,
+        ): SettingRef<Boolean> = SettingRef(featureClass, settingName, FeatureSetting.BooleanSetting::class.java)
+
+        @JvmStatic
+        fun ofInt(
+            featureClass: Class<out ConfigurableFeature>,
+            settingName: String,
+        ): SettingRef<Int> = SettingRef(featureClass, settingName, FeatureSetting.IntSetting::class.java)
+
+        @JvmStatic
+        fun ofFloat(
+            featureClass: Class<out ConfigurableFeature>,
+            settingName: String,
+        ): SettingRef<Float> = SettingRef(featureClass, settingName, FeatureSetting.FloatSetting::class.java)
+
+        @JvmStatic
+        fun ofDouble(
+            featureClass: Class<out ConfigurableFeature>,
+            settingName: String,
+        ): SettingRef<Double> = SettingRef(featureClass, settingName, FeatureSetting.DoubleSetting::class.java)
+    }
+}
@@ -3,45 +3,100 @@ package org.infinite.utils
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents
 import net.minecraft.client.MinecraftClient
 import net.minecraft.text.MutableText
+import net.minecraft.text.Text
+import net.minecraft.util.Formatting
 import org.infinite.InfiniteClient
-import java.util.concurrent.ConcurrentLinkedQueue
 
 object LogQueue : ClientTickEvents.EndTick {
-    // プレイヤーに送信待ちのメッセージを格納するスレッドセーフなキュー
-    private val messageQueue = ConcurrentLinkedQueue<MutableText>()
-    private const val MESSAGES_PER_TICK = 1 // 1ティックあたりに処理するメッセージの数
+    // 送信待ちのメッセージ。同じ内容のメッセージは1つにまとめ、送信時に件数を付記する
+    private class Entry(
+        val key: String,
+        val message: MutableText,
+    ) {
+        var count = 1
+    }
+
+    // 1ティックあたりにメッセージの送信に使う時間と、送信する最大件数
+    private const val DRAIN_BUDGET_NANOS = 1_000_000L
+    private const val MAX_MESSAGES_PER_TICK = 20
+
+    // キューに保持する最大件数。超えた分は破棄し、件数のみを後でまとめて通知する
+    private const val MAX_QUEUED_MESSAGES = 256
+
+    // 破棄した件数の通知の最短間隔
+    private const val OVERFLOW_NOTICE_INTERVAL_MS = 5_000L
+
+    // キューと重複検出用の索引は lock で保護する (どのスレッドからでも追加できるようにするため)
+    private val lock = Any()
+    private val messageQueue = ArrayDeque<Entry>()
+    private val pendingByKey = HashMap<String, Entry>()
+    private var droppedMessages = 0
+    private var lastOverflowNotice = 0L
 
     /**
      * キューにメッセージを追加します。
      * どこから呼び出されてもスレッドセーフです。
+     * まだ送信されていない同じ内容のメッセージがある場合は、新たに追加せずに件数をまとめます。
      *
      * @param message プレイヤーに送信するメッセージ
      */
     fun enqueueMessage(message: MutableText) {
-        messageQueue.add(message)
+        val key = message.string
+        synchronized(lock) {
+            val pending = pendingByKey[key]
+            if (pending != null) {
+                pending.count++
+                return
+            }
+            if (messageQueue.size >= MAX_QUEUED_MESSAGES) {
+                droppedMessages++
+                return
+            }
+            val entry = Entry(key, message)
+            messageQueue.addLast(entry)
+            pendingByKey[key] = entry
+        }
     }
 
     /**
      * クライアントのティックの終わりに呼び出されます。
-     * キューからメッセージを取り出し、プレイヤーに送信します。
+     * 時間予算の範囲内でキューからメッセージを取り出し、プレイヤーに送信します。
      */
     override fun onEndTick(client: MinecraftClient) {
-        if (client.player == null) {
-            // プレイヤーがいない場合（タイトル画面など）はキューを処理しない
-            return
-        }
+        val player = client.player ?: return // プレイヤーがいない場合（タイトル画面など）はキューを処理しない
 
-        // 1ティックあたり最大N個のメッセージを処理
-        for (i in 0 until MESSAGES_PER_TICK) {
-            val message = messageQueue.poll() // キューからメッセージを取り出す
-            if (message != null) {
-                // 'false' はメッセージがチャット履歴に残らないことを意味します
-                client.player!!.sendMessage(message, false)
-            } else {
-                // キューが空になったらループを終了
-                break
+        val start = System.nanoTime()
+        var sent = 0
+        while (sent < MAX_MESSAGES_PER_TICK && System.nanoTime() - start < DRAIN_BUDGET_NANOS) {
+            val entry =
+                synchronized(lock) {
+                    messageQueue.removeFirstOrNull()?.also { pendingByKey.remove(it.key) }
+                } ?: break
+            val message = entry.message
+            if (entry.count > 1) {
+                message.append(Text.literal(" (x${entry.count})").formatted(Formatting.GRAY))
             }
+            // 'false' はメッセージがチャット履歴に残らないことを意味します
+            player.sendMessage(message, false)
+            sent++
         }
+
+        notifyOverflow(client)
+    }
+
+    // 破棄したメッセージがあれば、一定間隔ごとにその件数だけを通知する
+    private fun notifyOverflow(client: MinecraftClient) {
+        val now = System.currentTimeMillis()
+        val dropped =
+            synchronized(lock) {
+                if (droppedMessages == 0 || now - lastOverflowNotice < OVERFLOW_NOTICE_INTERVAL_MS) return
+                lastOverflowNotice = now
+                droppedMessages.also { droppedMessages = 0 }
+            }
+        client.player?.sendMessage(
+            Text.literal("[Infinite Client]: $dropped messages were dropped (log queue full)").formatted(Formatting.GRAY),
+            false,
+        )
     }
 
     /**
@@ -129,6 +129,8 @@ object BlockUtils : ClientInterface() {
         val hitVec: Vec3d,
         val distanceSq: Double,
         val lineOfSight: Boolean,
+        // 現在の手持ちのアイテムで破壊にかかるティック数 (破壊できない場合は Float.POSITIVE_INFINITY)
+        val breakingTicks: Float,
     )
 
     fun getBlockBreakingParams(pos: BlockPos): BlockBreakingParams? {
@@ -181,12 +183,14 @@ object BlockUtils : ClientInterface() {
         }
 
         val bestIndex = bestSide.ordinal
+        val breakingDelta = player?.let { state.calcBlockBreakingDelta(it, world, pos) } ?: 0f
         return BlockBreakingParams(
             pos = pos,
             side = bestSide,
             hitVec = hitVecs[bestIndex],
             distanceSq = distancesSq[bestIndex],
             lineOfSight = linesOfSight[bestIndex],
+            breakingTicks = if (breakingDelta <= 0f) Float.POSITIVE_INFINITY else 1f / breakingDelta,
         )
     }
 
@@ -0,0 +1,92 @@
+package org.infinite.utils.block
+
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.minecraft.util.math.BlockBox
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Direction
+
+/**
+ * 6方向に隣接するブロックを幅優先で辿る、汎用の探索 (フラッドフィル)。
+ *
+ * 座標は [BlockPos.asLong] で `long` にまとめ、訪問済みの集合と探索キューはいずれもプリミティブ型のまま保持します。
+ * そのため、隣接ブロックごとに [BlockPos] を生成することはありません。
+ * [run] に渡す述語・コールバックには使い回しの [BlockPos.Mutable] が渡されるため、保持する場合は `toImmutable()` してください。
+ *
+ * インスタンスは探索の作業領域を再利用するため、同じスレッドから繰り返し使うことができます (スレッドセーフではありません)。
+ *
+ * @param maxAccepted 受け入れるブロックの最大数 (開始位置を含む)。達した時点で探索を打ち切る
+ * @param bounds 探索範囲。指定した場合、この範囲の外のブロックは調べない
+ */
+class FloodFill(
+    private val maxAccepted: Int = Int.MAX_VALUE,
+    private val bounds: BlockBox? = null,
+) {
+    private val queue = LongArrayFIFOQueue()
+
+    // 述語で除外したブロック。同じブロックを隣接する複数のブロックから何度も調べないよう、探索ごとに記録する
+    private val rejected = LongOpenHashSet()
+    private val cursor = BlockPos.Mutable()
+    private var stopped = false
+
+    /**
+     * [start] から探索し、受け入れたブロックの数を返します。
+     * [start] 自体は述語を通さずに受け入れます (呼び出し側で確認してください)。
+     *
+     * @param visited 受け入れたブロックを記録する集合。既に含まれているブロックは辿らないため、
+     *   複数回の探索で共有すれば、別の探索で見つけたブロックを除外できる
+     * @param onAccept ブロックを受け入れるたびに、受け入れた順に呼び出される
+     * @param accept 隣接するブロックを受け入れる (その先も辿る) 場合に true を返す
+     */
+    fun run(
+        start: BlockPos,
+        visited: LongOpenHashSet = LongOpenHashSet(),
+        onAccept: (BlockPos) -> Unit = {},
+        accept: (BlockPos) -> Boolean,
+    ): Int {
+        queue.clear()
+        rejected.clear()
+        stopped = false
+        val startKey = start.asLong()
+        if (!visited.add(startKey)) return 0
+        var accepted = 1
+        onAccept(cursor.set(startKey))
+        queue.enqueue(startKey)
+
+        while (!queue.isEmpty && accepted < maxAccepted && !stopped) {
+            val current = queue.dequeueLong()
+            for (direction in DIRECTIONS) {
+                val neighbor = BlockPos.offset(current, direction)
+                if (neighbor in visited || neighbor in rejected) continue
+                val pos = cursor.set(neighbor)
+                if (!inBounds(pos) || !accept(pos)) {
+                    if (stopped) break
+                    rejected.add(neighbor)
+                    continue
+                }
+                visited.add(neighbor)
+                accepted++
+                onAccept(cursor.set(neighbor))
+                if (accepted >= maxAccepted) break
+                queue.enqueue(neighbor)
+            }
+        }
+        return accepted
+    }
+
+    /**
+     * 実行中の探索を打ち切ります。[run] に渡した述語から呼び出し、述語は false を返してください。
+     */
+    fun stop() {
+        stopped = true
+    }
+
+    private fun inBounds(pos: BlockPos): Boolean {
+        val box = bounds ?: return true
+        return pos.x in box.minX..box.maxX && pos.y in box.minY..box.maxY && pos.z in box.minZ..box.maxZ
+    }
+
+    companion object {
+        private val DIRECTIONS = Direction.entries.toTypedArray()
+    }
+}
@@ -0,0 +1,98 @@
+package org.infinite.libs.ai.pathing
+
+import net.minecraft.Bootstrap
+import net.minecraft.SharedConstants
+import net.minecraft.block.BlockState
+import net.minecraft.block.Blocks
+import net.minecraft.util.math.BlockPos
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * 合成した地形の [WalkabilityGrid] 上で [AStarPathPlanner.search] を計測するベンチマーク。
+ *
+ * 地形は平らな石の床に、1ブロックの段差と、ジャンプで越えられない2ブロックの柱を [obstacleDensity] の割合で置いたものです。
+ * [searchColdGrid] はグリッドのセクションの構築を含み、[searchWarmGrid] は構築済みのグリッドでの探索だけを計測します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class AStarPathPlannerBenchmark {
+    @Param("0.0", "0.15", "0.3")
+    var obstacleDensity = 0.0
+
+    // 各列の床の高さ (この高さ未満が石)
+    private lateinit var floorTops: IntArray
+    private lateinit var warmGrid: WalkabilityGrid
+
+    private val from = BlockPos(MIN_XZ + 2, FLOOR_Y, MIN_XZ + 2)
+    private val goal = PathGoal(MAX_XZ - 2, FLOOR_Y, MAX_XZ - 2, radius = null)
+
+    @Setup
+    fun setup() {
+        SharedConstants.createGameVersion()
+        Bootstrap.initialize()
+        val random = Random(SEED)
+        floorTops =
+            IntArray(SIZE * SIZE) {
+                val roll = random.nextDouble()
+                when {
+                    roll < obstacleDensity / 2 -> FLOOR_Y + 2
+                    roll < obstacleDensity -> FLOOR_Y + 1
+                    else -> FLOOR_Y
+                }
+            }
+        // 出発地点と目的地は空けておく
+        floorTops[index(from.x, from.z)] = FLOOR_Y
+        floorTops[index(goal.x, goal.z)] = FLOOR_Y
+        warmGrid = createGrid()
+        AStarPathPlanner.search(warmGrid, from, goal)
+    }
+
+    @Benchmark
+    fun searchColdGrid(): PlannedPath = AStarPathPlanner.search(createGrid(), from, goal)
+
+    @Benchmark
+    fun searchWarmGrid(): PlannedPath = AStarPathPlanner.search(warmGrid, from, goal)
+
+    private fun createGrid(): WalkabilityGrid =
+        WalkabilityGrid(
+            { x, y, z -> x in MIN_XZ..MAX_XZ && y in MIN_Y..MAX_Y && z in MIN_XZ..MAX_XZ },
+            { x, y, z -> blockState(x, y, z) },
+        )
+
+    private fun blockState(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): BlockState {
+        if (x !in MIN_XZ..MAX_XZ || z !in MIN_XZ..MAX_XZ) return AIR
+        return if (y < floorTops[index(x, z)]) STONE else AIR
+    }
+
+    private fun index(
+        x: Int,
+        z: Int,
+    ): Int = (x - MIN_XZ) * SIZE + (z - MIN_XZ)
+
+    companion object {
+        private const val SEED = 20251019L
+        private const val SIZE = 128
+        private const val MIN_XZ = -SIZE / 2
+        private const val MAX_XZ = MIN_XZ + SIZE - 1
+        private const val FLOOR_Y = 64
+        private const val MIN_Y = FLOOR_Y - 16
+        private const val MAX_Y = FLOOR_Y + 31
+
+        private val STONE: BlockState by lazy { Blocks.STONE.defaultState }
+        private val AIR: BlockState by lazy { Blocks.AIR.defaultState }
+    }
+}
@@ -0,0 +1,87 @@
+package org.infinite.utils.block
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet
+import net.minecraft.util.math.BlockBox
+import net.minecraft.util.math.BlockPos
+import net.minecraft.util.math.Direction
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.BitSet
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * 合成した洞窟 (空気のブロックの集合) の上で [FloodFill] を計測するベンチマーク。
+ *
+ * [floodFill] は範囲全体の連結成分を辿り、[floodFillLimited] は BranchMinerの空気の数え上げ (AirComponentCache) と同じく
+ * [LIMITED_MAX_ACCEPTED] 個で打ち切ります。比較のため、[BlockPos] の集合とキューを使う素朴な幅優先探索
+ * ([boxedBfs]) も計測します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class FloodFillBenchmark {
+    @Param("0.6", "0.8")
+    var airDensity = 0.0
+
+    // 範囲内の空気のブロック (インデックスは index(x, y, z))
+    private val air = BitSet(SIZE * SIZE * SIZE)
+    private val bounds = BlockBox(0, 0, 0, SIZE - 1, SIZE - 1, SIZE - 1)
+    private val start = BlockPos(SIZE / 2, SIZE / 2, SIZE / 2)
+    private val floodFill = FloodFill(bounds = bounds)
+    private val limitedFloodFill = FloodFill(maxAccepted = LIMITED_MAX_ACCEPTED, bounds = bounds)
+
+    @Setup
+    fun setup() {
+        val random = Random(SEED)
+        air.clear()
+        for (index in 0 until SIZE * SIZE * SIZE) {
+            if (random.nextDouble() < airDensity) air.set(index)
+        }
+        air.set(index(start.x, start.y, start.z))
+    }
+
+    @Benchmark
+    fun floodFill(): Int = floodFill.run(start) { isAir(it) }
+
+    @Benchmark
+    fun floodFillLimited(): Int = limitedFloodFill.run(start, LongOpenHashSet(LIMITED_MAX_ACCEPTED)) { isAir(it) }
+
+    @Benchmark
+    fun boxedBfs(): Int {
+        val visited = mutableSetOf(start)
+        val queue = ArrayDeque<BlockPos>()
+        queue.add(start)
+        while (queue.isNotEmpty()) {
+            val current = queue.removeFirst()
+            for (direction in DIRECTIONS) {
+                val neighbor = current.offset(direction)
+                if (neighbor in visited || !bounds.contains(neighbor) || !isAir(neighbor)) continue
+                visited.add(neighbor)
+                queue.add(neighbor)
+            }
+        }
+        return visited.size
+    }
+
+    private fun isAir(pos: BlockPos): Boolean = air.get(index(pos.x, pos.y, pos.z))
+
+    private fun index(
+        x: Int,
+        y: Int,
+        z: Int,
+    ): Int = (y * SIZE + z) * SIZE + x
+
+    companion object {
+        private const val SEED = 20251019L
+        private const val SIZE = 48
+        private const val LIMITED_MAX_ACCEPTED = 256
+        private val DIRECTIONS = Direction.entries.toTypedArray()
+    }
+}